@@ -0,0 +1,56 @@
+package pl.edu.agh.to2.service;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+// Run with: ./gradlew jmh
+// The largest file is written to the temp directory, it needs 10 GB of free space.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class FileHasherBenchmark {
+    @Param({"1024", "1048576", "104857600", "1073741824", "10737418240"})
+    private long size;
+
+    private Path file;
+    private SHA256FileHasher streamHasher;
+    private ChannelFileHasher channelHasher;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        file = Files.createTempFile("hasher-benchmark", ".bin");
+        byte[] chunk = new byte[1024 * 1024];
+        new Random(42).nextBytes(chunk);
+        try (OutputStream out = Files.newOutputStream(file)) {
+            for (long written = 0; written < size; written += chunk.length) {
+                out.write(chunk, 0, (int) Math.min(chunk.length, size - written));
+            }
+        }
+        streamHasher = new SHA256FileHasher();
+        channelHasher = new ChannelFileHasher(64L * 1024 * 1024);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(file);
+    }
+
+    @Benchmark
+    public String streamHash() throws IOException {
+        return streamHasher.hash(file);
+    }
+
+    @Benchmark
+    public String channelHash() throws IOException {
+        return channelHasher.hash(file);
+    }
+}
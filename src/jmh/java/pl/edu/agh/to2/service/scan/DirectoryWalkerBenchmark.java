@@ -0,0 +1,76 @@
+package pl.edu.agh.to2.service.scan;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+// Run with: ./gradlew jmh
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class DirectoryWalkerBenchmark {
+    private static final Pattern pattern = Pattern.compile(".*");
+
+    @Param({"4"})
+    private int depth;
+
+    @Param({"6"})
+    private int dirsPerDir;
+
+    @Param({"20"})
+    private int filesPerDir;
+
+    private Path root;
+    private RecursiveDirectoryWalker recursiveWalker;
+    private ForkJoinDirectoryWalker forkJoinWalker;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        root = Files.createTempDirectory("walker-benchmark");
+        createTree(root, depth);
+        recursiveWalker = new RecursiveDirectoryWalker();
+        forkJoinWalker = new ForkJoinDirectoryWalker(0);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        forkJoinWalker.shutdown();
+        try (Stream<Path> paths = Files.walk(root)) {
+            for (Path path : paths.sorted(Comparator.reverseOrder()).toList()) {
+                Files.deleteIfExists(path);
+            }
+        }
+    }
+
+    private void createTree(Path dir, int level) throws IOException {
+        for (int i = 0; i < filesPerDir; i++) {
+            Files.writeString(dir.resolve("file" + i + ".txt"), "content" + i);
+        }
+        if (level == 0) {
+            return;
+        }
+        for (int i = 0; i < dirsPerDir; i++) {
+            createTree(Files.createDirectory(dir.resolve("dir" + i)), level - 1);
+        }
+    }
+
+    @Benchmark
+    public void recursiveWalk(Blackhole blackhole) {
+        blackhole.consume(recursiveWalker.walk(root, pattern));
+    }
+
+    @Benchmark
+    public void forkJoinWalk(Blackhole blackhole) {
+        blackhole.consume(forkJoinWalker.walk(root, pattern));
+    }
+}
@@ -1,10 +1,17 @@
 package pl.edu.agh.to2.config;
 
 import io.github.cdimascio.dotenv.Dotenv;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.ComponentScan;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.context.annotation.PropertySource;
+import pl.edu.agh.to2.service.ChannelFileHasher;
+import pl.edu.agh.to2.service.FileHasher;
+import pl.edu.agh.to2.service.SHA256FileHasher;
+import pl.edu.agh.to2.service.XxHash64FileHasher;
+import pl.edu.agh.to2.types.HashAlgorithm;
+import pl.edu.agh.to2.types.HashReader;
 
 import java.time.Clock;
 
@@ -22,4 +29,17 @@ public class AppConfig {
     public Clock clock() {
         return Clock.systemDefaultZone();
     }
+
+    @Bean
+    public FileHasher fileHasher(@Value("${file-cleaner.hash.algorithm:SHA256}") HashAlgorithm algorithm,
+                                 @Value("${file-cleaner.hash.reader:CHANNEL}") HashReader reader,
+                                 @Value("${file-cleaner.hash.map-threshold-mb:64}") long mapThresholdMb) {
+        if (algorithm == HashAlgorithm.XXH64) {
+            return new XxHash64FileHasher();
+        }
+        return switch (reader) {
+            case STREAM -> new SHA256FileHasher();
+            case CHANNEL -> new ChannelFileHasher(mapThresholdMb * 1024 * 1024);
+        };
+    }
 }
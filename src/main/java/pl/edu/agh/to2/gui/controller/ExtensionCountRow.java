@@ -3,10 +3,12 @@ package pl.edu.agh.to2.gui.controller;
 public class ExtensionCountRow {
     private final String extension;
     private final Long count;
+    private final String size;
 
-    public ExtensionCountRow(String extension, Long count) {
+    public ExtensionCountRow(String extension, Long count, String size) {
         this.extension = extension;
         this.count = count;
+        this.size = size;
     }
 
     public String getExtension() {
@@ -16,4 +18,8 @@ public class ExtensionCountRow {
     public Long getCount() {
         return count;
     }
+
+    public String getSize() {
+        return size;
+    }
 }
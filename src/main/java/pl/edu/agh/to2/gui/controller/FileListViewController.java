@@ -1,7 +1,6 @@
 package pl.edu.agh.to2.gui.controller;
 
 import javafx.collections.FXCollections;
-import javafx.collections.ObservableList;
 import javafx.fxml.FXML;
 import javafx.scene.Scene;
 import javafx.scene.control.Button;
@@ -16,11 +15,13 @@ import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Component;
 import pl.edu.agh.to2.command.CommandRegistry;
 import pl.edu.agh.to2.command.DeleteActionCommand;
+import pl.edu.agh.to2.gui.utils.LazyPagedList;
 import pl.edu.agh.to2.gui.utils.SpringFXMLLoader;
 import pl.edu.agh.to2.gui.utils.TaskExecutor;
 import pl.edu.agh.to2.model.File;
 import pl.edu.agh.to2.repository.ActionLogRepository;
 import pl.edu.agh.to2.service.FileService;
+import pl.edu.agh.to2.types.ScanMode;
 
 import java.awt.*;
 import java.io.IOException;
@@ -36,6 +37,11 @@ import java.util.stream.Collectors;
 @Component
 public class FileListViewController {
     private static final Logger logger = LoggerFactory.getLogger(FileListViewController.class);
+    // The listing of a directory is loaded as the table is scrolled, at most this many rows are held at once
+    private static final int PAGE_SIZE = 500;
+    private static final int CACHED_PAGES = 8;
+    // Shown in the rows of a page that is still being loaded
+    private static final FileRow LOADING_ROW = new FileRow("Loading...", "", "");
     private final SpringFXMLLoader loader;
     private final FileService fileService;
     private final ActionLogRepository actionLogRepository;
@@ -122,6 +128,7 @@ public class FileListViewController {
     private void onDeleteClicked() {
         var selectedRows = fileTableView.getSelectionModel().getSelectedItems();
         var selectedRowsCopy = FXCollections.observableArrayList(selectedRows);
+        selectedRowsCopy.removeIf(row -> row == null || row == LOADING_ROW);
 
         if (!selectedRowsCopy.isEmpty()) {
             taskExecutor.run(() -> {
@@ -133,9 +140,9 @@ public class FileListViewController {
                                 }
 
                         );
-                        return fileService.findFilesInPath(Path.of(directoryPath));
+                        return pagedFilesIn(Path.of(directoryPath));
                     },
-                    this::updateTable
+                    this::showPagedRows
             );
         }
     }
@@ -159,6 +166,12 @@ public class FileListViewController {
         });
     }
 
+    @FXML
+    private void onFindNearDuplicatesClicked() {
+        showModal("/fxml/GroupFilesView.fxml", "Near Duplicates", controller ->
+                ((GroupFilesViewController) controller).show(FileService::findNearDuplicates));
+    }
+
 
     @FXML
     private void onSelectNewPathClicked() {
@@ -266,22 +279,57 @@ public class FileListViewController {
 
     private void updateFileList() {
         taskExecutor.run(() -> {
-                    fileService.loadFromPath(Path.of(directoryPath), Pattern.compile((pattern == null || pattern.isEmpty()) ? ".*" : pattern));
-                    return fileService.findFilesInPath(Path.of(directoryPath));
+                    fileService.loadFromPath(
+                            Path.of(directoryPath),
+                            Pattern.compile((pattern == null || pattern.isEmpty()) ? ".*" : pattern),
+                            ScanMode.INCREMENTAL
+                    );
+                    return pagedFilesIn(Path.of(directoryPath));
                 },
-                this::updateTable
+                this::showPagedRows
         );
     }
 
     private void loadAllFiles() {
-        taskExecutor.run(() -> fileService.findFilesInPath(Path.of(directoryPath)), this::updateTable);
+        taskExecutor.run(() -> pagedFilesIn(Path.of(directoryPath)), this::showPagedRows);
     }
 
-    private void updateTable(List<File> files) {
-        ObservableList<FileRow> rows = FXCollections.observableArrayList(
-                files.stream().map(FileRow::new).toList()
+    private LazyPagedList<FileRow, String> pagedFilesIn(Path directory) {
+        long count = fileService.countFilesInPath(directory);
+        LazyPagedList<FileRow, String> rows = new LazyPagedList<>(
+                (int) Math.min(count, Integer.MAX_VALUE),
+                PAGE_SIZE,
+                CACHED_PAGES,
+                "",
+                LOADING_ROW,
+                (afterPath, skip, limit) -> fileService.findFilesInPath(directory, afterPath, skip, limit).stream()
+                        .map(FileRow::new)
+                        .toList(),
+                FileRow::getPath
         );
-        fileTableView.setItems(rows);
+        // The first page is loaded here rather than on the application thread
+        rows.preload(0);
+        return rows;
+    }
+
+    private void updateTable(List<File> files) {
+        setColumnsSortable(true);
+        fileTableView.setItems(FXCollections.observableArrayList(files.stream().map(FileRow::new).toList()));
+    }
+
+    private void showPagedRows(LazyPagedList<FileRow, String> rows) {
+        // The paged list is read-only and already ordered by path, sorting it in the table would load every page
+        setColumnsSortable(false);
+        rows.setOnPageLoaded(fileTableView::refresh);
+        // Wrapping the list keeps it lazy, the table only asks for the visible rows
+        fileTableView.setItems(FXCollections.observableList(rows));
+    }
+
+    private void setColumnsSortable(boolean sortable) {
+        if (!sortable) {
+            fileTableView.getSortOrder().clear();
+        }
+        fileTableView.getColumns().forEach(column -> column.setSortable(sortable));
     }
 
     @FXML
@@ -16,21 +16,24 @@ import javafx.scene.layout.Pane;
 import javafx.util.Duration;
 import org.springframework.stereotype.Component;
 import pl.edu.agh.to2.gui.utils.TaskExecutor;
+import pl.edu.agh.to2.repository.BlockDedupStats;
+import pl.edu.agh.to2.repository.ExtensionStats;
 import pl.edu.agh.to2.repository.FileSizeStats;
 import pl.edu.agh.to2.service.FileService;
 import pl.edu.agh.to2.service.Histogram;
+import pl.edu.agh.to2.service.SharedContent;
 
 import java.text.DateFormat;
 import java.text.SimpleDateFormat;
 import java.util.Date;
 import java.util.List;
-import java.util.Map;
 import java.util.Optional;
 import java.util.function.Function;
 import java.util.stream.Stream;
 
 @Component
 public class ReportsViewController {
+    private static final int SHARED_CONTENT_ROWS = 50;
     private final FileService fileService;
     private final Timeline debounceTimeline = new Timeline();
 
@@ -40,6 +43,16 @@ public class ReportsViewController {
     private TableColumn<ExtensionCountRow, String> extensionColumn;
     @FXML
     private TableColumn<ExtensionCountRow, Long> countColumn;
+    @FXML
+    private TableColumn<ExtensionCountRow, String> sizeColumn;
+    @FXML
+    private TableView<SharedContentRow> sharedContentTable;
+    @FXML
+    private TableColumn<SharedContentRow, String> firstFileColumn;
+    @FXML
+    private TableColumn<SharedContentRow, String> secondFileColumn;
+    @FXML
+    private TableColumn<SharedContentRow, String> sharedBytesColumn;
     private TaskExecutor taskExecutor;
 
     @FXML
@@ -69,6 +82,9 @@ public class ReportsViewController {
     @FXML
     private Label countLabel;
 
+    @FXML
+    private Label blockDedupLabel;
+
     @FXML
     private BarChart<String, Number> sizeHist;
 
@@ -93,6 +109,10 @@ public class ReportsViewController {
         rootPane.setMaxHeight(800);
         extensionColumn.setCellValueFactory(new PropertyValueFactory<>("extension"));
         countColumn.setCellValueFactory(new PropertyValueFactory<>("count"));
+        sizeColumn.setCellValueFactory(new PropertyValueFactory<>("size"));
+        firstFileColumn.setCellValueFactory(new PropertyValueFactory<>("first"));
+        secondFileColumn.setCellValueFactory(new PropertyValueFactory<>("second"));
+        sharedBytesColumn.setCellValueFactory(new PropertyValueFactory<>("shared"));
     }
 
     private void initializeSlider() {
@@ -118,7 +138,9 @@ public class ReportsViewController {
 
     public void show() {
         taskExecutor.run(fileService::getFileSizeStats, this::displayStats);
-        taskExecutor.run(fileService::getFileCountsByExtension, this::displayExtensionCounts);
+        taskExecutor.run(fileService::getExtensionStats, this::displayExtensionCounts);
+        taskExecutor.run(fileService::getBlockDedupStats, this::displayBlockDedupStats);
+        taskExecutor.run(() -> fileService.findFilesSharingContent(SHARED_CONTENT_ROWS), this::displaySharedContent);
         showHistograms((numberOfBucketsSlider.valueProperty().intValue()));
     }
 
@@ -193,11 +215,32 @@ public class ReportsViewController {
     }
 
 
-    private void displayExtensionCounts(Map<String, Long> counts) {
+    private void displayExtensionCounts(List<ExtensionStats> stats) {
         tableView.getItems().clear();
-        tableView.getItems().addAll(counts.entrySet().stream()
-                .map(e -> new ExtensionCountRow(e.getKey().isEmpty() ? "NO EXT" : e.getKey(), e.getValue()))
+        tableView.getItems().addAll(stats.stream()
+                .map(e -> new ExtensionCountRow(
+                        e.extension().isEmpty() ? "NO EXT" : e.extension(),
+                        e.count(),
+                        bytesToHumanReadable(e.totalBytes())))
+                .toList());
+    }
+
+    private void displayBlockDedupStats(Optional<BlockDedupStats> blockDedupStats) {
+        blockDedupStats.ifPresent(stats -> {
+            blockDedupLabel.setText("Reclaimable with block-level dedup: " + bytesToHumanReadable(stats.reclaimableBytes())
+                    + " of " + bytesToHumanReadable(stats.bytes()) + " in " + stats.files() + " large files");
+            blockDedupLabel.setVisible(true);
+        });
+    }
+
+    private void displaySharedContent(List<SharedContent> pairs) {
+        sharedContentTable.getItems().setAll(pairs.stream()
+                .map(pair -> new SharedContentRow(
+                        pair.first().getPath(),
+                        pair.second().getPath(),
+                        bytesToHumanReadable(pair.sharedBytes())))
                 .toList());
+        sharedContentTable.setVisible(!pairs.isEmpty());
     }
 
     private String millisToDate(long millis) {
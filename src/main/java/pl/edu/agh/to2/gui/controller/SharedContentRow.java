@@ -0,0 +1,25 @@
+package pl.edu.agh.to2.gui.controller;
+
+public class SharedContentRow {
+    private final String first;
+    private final String second;
+    private final String shared;
+
+    public SharedContentRow(String first, String second, String shared) {
+        this.first = first;
+        this.second = second;
+        this.shared = shared;
+    }
+
+    public String getFirst() {
+        return first;
+    }
+
+    public String getSecond() {
+        return second;
+    }
+
+    public String getShared() {
+        return shared;
+    }
+}
@@ -0,0 +1,166 @@
+package pl.edu.agh.to2.gui.utils;
+
+import javafx.application.Platform;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.AbstractList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+// Read-only list of a known size whose elements are loaded a page at a time, the first time one of them is asked
+// for, and only the most recently used pages are kept. A page is fetched by keyset from the last key of the
+// nearest loaded page before it, so scrolling down costs one index range scan per page.
+// Pages are queried on a background thread: until its page arrives an element is the placeholder, and the
+// control is told to redraw once it has. A page that failed to load stays the placeholder and is not queried
+// again for a while, so redraws don't retry it in a loop. Not thread safe, meant to be used from the JavaFX
+// application thread once it is given to a control.
+public class LazyPagedList<T, K> extends AbstractList<T> {
+    private static final Logger logger = LoggerFactory.getLogger(LazyPagedList.class);
+    private static final long RETRY_DELAY_NANOS = TimeUnit.SECONDS.toNanos(5);
+    // Shared by all lists, pages are loaded one at a time
+    private static final ExecutorService PAGE_LOADER = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "page-loader");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final int size;
+    private final int pageSize;
+    private final K firstKey;
+    private final T placeholder;
+    private final PageLoader<T, K> loader;
+    private final Function<T, K> keyOf;
+    private final Map<Integer, List<T>> pages;
+    // Last key of every page loaded so far, a page index and a key per page
+    private final TreeMap<Integer, K> lastKeys = new TreeMap<>();
+    private final Set<Integer> loading = new HashSet<>();
+    // Pages whose last load failed and the System.nanoTime() after which they may be loaded again
+    private final Map<Integer, Long> retryAfter = new HashMap<>();
+    private Runnable onPageLoaded = () -> {
+    };
+
+    public LazyPagedList(int size, int pageSize, int cachedPages, K firstKey, T placeholder,
+                         PageLoader<T, K> loader, Function<T, K> keyOf) {
+        this.size = size;
+        this.pageSize = pageSize;
+        this.firstKey = firstKey;
+        this.placeholder = placeholder;
+        this.loader = loader;
+        this.keyOf = keyOf;
+        this.pages = new LinkedHashMap<>(cachedPages, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, List<T>> eldest) {
+                return size() > cachedPages;
+            }
+        };
+    }
+
+    // Called on the application thread whenever a page has arrived, e.g. to refresh the control
+    public void setOnPageLoaded(Runnable onPageLoaded) {
+        this.onPageLoaded = onPageLoaded;
+    }
+
+    // Loads a page on the calling thread, for a background task to fill the list before it is shown
+    public void preload(int page) {
+        if (page * pageSize < size) {
+            Request request = request(page);
+            List<T> rows = request.load();
+            pages.put(page, rows);
+            request.remember(rows);
+        }
+    }
+
+    // Rows removed since the size was counted leave null elements at the end
+    @Override
+    public T get(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException(index);
+        }
+        int page = index / pageSize;
+        List<T> rows = pages.get(page);
+        if (rows == null) {
+            loadInBackground(page);
+            return placeholder;
+        }
+        int offset = index % pageSize;
+        return offset < rows.size() ? rows.get(offset) : null;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    private void loadInBackground(int page) {
+        Long retryTime = retryAfter.get(page);
+        if ((retryTime != null && System.nanoTime() - retryTime < 0) || !loading.add(page)) {
+            return;
+        }
+        Request request = request(page);
+        PAGE_LOADER.execute(() -> {
+            List<T> rows;
+            try {
+                rows = request.load();
+            } catch (RuntimeException e) {
+                logger.error("Error loading page {}", page, e);
+                Platform.runLater(() -> {
+                    loading.remove(page);
+                    retryAfter.put(page, System.nanoTime() + RETRY_DELAY_NANOS);
+                });
+                return;
+            }
+            Platform.runLater(() -> {
+                loading.remove(page);
+                retryAfter.remove(page);
+                pages.put(page, rows);
+                request.remember(rows);
+                onPageLoaded.run();
+            });
+        });
+    }
+
+    // The keyset and offset are taken on the application thread, the query itself may run anywhere
+    private Request request(int page) {
+        Map.Entry<Integer, K> previous = lastKeys.floorEntry(page - 1);
+        K after = previous == null ? firstKey : previous.getValue();
+        int firstPage = previous == null ? 0 : previous.getKey() + 1;
+        return new Request(page, after, (page - firstPage) * pageSize);
+    }
+
+    private class Request {
+        private final int page;
+        private final K after;
+        private final int skip;
+
+        Request(int page, K after, int skip) {
+            this.page = page;
+            this.after = after;
+            this.skip = skip;
+        }
+
+        List<T> load() {
+            return loader.load(after, skip, pageSize);
+        }
+
+        void remember(List<T> rows) {
+            if (!rows.isEmpty()) {
+                lastKeys.put(page, keyOf.apply(rows.get(rows.size() - 1)));
+            }
+        }
+    }
+
+    @FunctionalInterface
+    public interface PageLoader<T, K> {
+        List<T> load(K after, int skip, int limit);
+    }
+}
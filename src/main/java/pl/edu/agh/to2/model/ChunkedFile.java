@@ -0,0 +1,56 @@
+package pl.edu.agh.to2.model;
+
+import jakarta.persistence.*;
+
+// A file split into chunks by ContentChunker, see FileChunk. Identified by path, size and modification time
+// rather than by the file row, so the chunks outlive full scans that recreate the rows of unchanged files.
+@Entity
+@Table(uniqueConstraints = @UniqueConstraint(name = "uk_chunked_file_path_size_last_modified",
+        columnNames = {"path", "size", "lastModified"}))
+public class ChunkedFile {
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE)
+    private long id;
+
+    @Column(nullable = false, length = 1024)
+    private String path;
+
+    @Column(nullable = false)
+    private long size;
+
+    @Column(nullable = false)
+    private long lastModified;
+
+    @Column(nullable = false)
+    private int chunkCount;
+
+    public ChunkedFile() {
+    }
+
+    public ChunkedFile(String path, long size, long lastModified, int chunkCount) {
+        this.path = path;
+        this.size = size;
+        this.lastModified = lastModified;
+        this.chunkCount = chunkCount;
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public String getPath() {
+        return path;
+    }
+
+    public long getSize() {
+        return size;
+    }
+
+    public long getLastModified() {
+        return lastModified;
+    }
+
+    public int getChunkCount() {
+        return chunkCount;
+    }
+}
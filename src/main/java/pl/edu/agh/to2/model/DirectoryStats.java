@@ -0,0 +1,115 @@
+package pl.edu.agh.to2.model;
+
+import jakarta.persistence.*;
+
+// Totals of the files directly in a directory and of its whole subtree, for one scan generation.
+// Duplicate bytes are the bytes of files with at least one identical copy anywhere in the index.
+@Entity
+@Table(
+        uniqueConstraints = @UniqueConstraint(name = "uk_directory_stats_generation_path",
+                columnNames = {"generation", "path"}),
+        indexes = @Index(name = "idx_directory_stats_generation_subtree_bytes",
+                columnList = "generation, subtreeBytes DESC")
+)
+public class DirectoryStats {
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE)
+    private long id;
+
+    @Column(nullable = false)
+    private long generation;
+
+    @Column(nullable = false, length = 1024)
+    private String path;
+
+    @Column(nullable = false)
+    private long fileCount;
+
+    @Column(nullable = false)
+    private long totalBytes;
+
+    @Column(nullable = false)
+    private long maxLastModified;
+
+    @Column(nullable = false)
+    private long duplicateBytes;
+
+    @Column(nullable = false)
+    private long subtreeFileCount;
+
+    @Column(nullable = false)
+    private long subtreeBytes;
+
+    @Column(nullable = false)
+    private long subtreeMaxLastModified;
+
+    @Column(nullable = false)
+    private long subtreeDuplicateBytes;
+
+    public DirectoryStats() {
+    }
+
+    public DirectoryStats(long generation, String path) {
+        this.generation = generation;
+        this.path = path;
+    }
+
+    public void addFiles(long count, long bytes, long maxLastModified, long duplicateBytes) {
+        this.fileCount += count;
+        this.totalBytes += bytes;
+        this.maxLastModified = Math.max(this.maxLastModified, maxLastModified);
+        this.duplicateBytes += duplicateBytes;
+        addSubtreeFiles(count, bytes, maxLastModified, duplicateBytes);
+    }
+
+    public void addSubtreeFiles(long count, long bytes, long maxLastModified, long duplicateBytes) {
+        this.subtreeFileCount += count;
+        this.subtreeBytes += bytes;
+        this.subtreeMaxLastModified = Math.max(this.subtreeMaxLastModified, maxLastModified);
+        this.subtreeDuplicateBytes += duplicateBytes;
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public long getGeneration() {
+        return generation;
+    }
+
+    public String getPath() {
+        return path;
+    }
+
+    public long getFileCount() {
+        return fileCount;
+    }
+
+    public long getTotalBytes() {
+        return totalBytes;
+    }
+
+    public long getMaxLastModified() {
+        return maxLastModified;
+    }
+
+    public long getDuplicateBytes() {
+        return duplicateBytes;
+    }
+
+    public long getSubtreeFileCount() {
+        return subtreeFileCount;
+    }
+
+    public long getSubtreeBytes() {
+        return subtreeBytes;
+    }
+
+    public long getSubtreeMaxLastModified() {
+        return subtreeMaxLastModified;
+    }
+
+    public long getSubtreeDuplicateBytes() {
+        return subtreeDuplicateBytes;
+    }
+}
@@ -1,16 +1,21 @@
 package pl.edu.agh.to2.model;
 
 import jakarta.persistence.*;
+import org.hibernate.annotations.Where;
 
 import java.util.Objects;
 
+// Only rows of the active scan generation are visible, see ScanGeneration. Native queries have to filter on their own.
 @Entity
+@Where(clause = "generation = " + ScanGeneration.ACTIVE_ID_SQL)
 @Table(
+        uniqueConstraints = @UniqueConstraint(name = "uk_file_generation_path", columnNames = {"generation", "path"}),
         indexes = {
                 @Index(name = "idx_file_name", columnList = "name"),
                 @Index(name = "idx_file_path", columnList = "path"),
-                @Index(name = "idx_file_size", columnList = "size"),
-                @Index(name = "idx_file_last_modified", columnList = "lastModified")
+                @Index(name = "idx_file_size_hash", columnList = "size, hash"),
+                @Index(name = "idx_file_last_modified", columnList = "lastModified"),
+                @Index(name = "idx_file_generation_extension_size", columnList = "generation, extension, size")
         }
 )
 public class File {
@@ -21,9 +26,13 @@ public class File {
     @Column(nullable = false)
     private String name;
 
-    @Column(nullable = false, unique = true, length = 1024)
+    @Column(nullable = false, length = 1024)
     private String path;
 
+    // part of the name after the last dot, empty if there is none
+    @Column(nullable = false)
+    private String extension;
+
     @Column(nullable = false)
     private long size;
 
@@ -31,18 +40,46 @@ public class File {
     private long lastModified;
 
     @Column(nullable = false)
+    private long generation;
+
+    // null until the file is hashed, see HashingMode.LAZY
+    @Column
+    @Convert(converter = HexConverter.class)
     private String hash;
 
+    // see FileHasher.algorithm()
+    @Column
+    private String hashAlgorithm;
+
+    // hash of the size, head and tail of the file, only computed for files whose size collides
+    @Column
+    @Convert(converter = HexConverter.class)
+    private String partialHash;
+
+    // MinHash signature of the content, see MinHasher; null unless file-cleaner.similarity.enabled is set
+    @Column
+    private byte[] minHash;
+
+    // mark of the last incremental scan that saw the file, rows without the current mark are deleted at its end
+    @Column
+    private Long scanMark;
+
     public File() {
 
     }
 
     public File(String name, String path, long size, long lastModified, String hash) {
+        this(name, path, size, lastModified, hash, null);
+    }
+
+    public File(String name, String path, long size, long lastModified, String hash, String hashAlgorithm) {
         this.name = name;
         this.path = path;
+        this.extension = extensionOf(name);
         this.size = size;
         this.lastModified = lastModified;
         this.hash = hash;
+        this.hashAlgorithm = hashAlgorithm;
     }
 
     public long getId() {
@@ -57,6 +94,15 @@ public class File {
         return path;
     }
 
+    public String getExtension() {
+        return extension;
+    }
+
+    public static String extensionOf(String name) {
+        int dotIndex = name.lastIndexOf('.');
+        return dotIndex == -1 ? "" : name.substring(dotIndex + 1);
+    }
+
     public long getSize() {
         return size;
     }
@@ -69,6 +115,47 @@ public class File {
         return hash;
     }
 
+    public String getHashAlgorithm() {
+        return hashAlgorithm;
+    }
+
+    public void setHash(String hash, String hashAlgorithm) {
+        this.hash = hash;
+        this.hashAlgorithm = hashAlgorithm;
+    }
+
+    public String getPartialHash() {
+        return partialHash;
+    }
+
+    public void setPartialHash(String partialHash) {
+        this.partialHash = partialHash;
+    }
+
+    public byte[] getMinHash() {
+        return minHash;
+    }
+
+    public void setMinHash(byte[] minHash) {
+        this.minHash = minHash;
+    }
+
+    public Long getScanMark() {
+        return scanMark;
+    }
+
+    public void setScanMark(Long scanMark) {
+        this.scanMark = scanMark;
+    }
+
+    public long getGeneration() {
+        return generation;
+    }
+
+    public void setGeneration(long generation) {
+        this.generation = generation;
+    }
+
     public long getLastModified() {
         return lastModified;
     }
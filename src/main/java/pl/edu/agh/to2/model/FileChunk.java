@@ -0,0 +1,78 @@
+package pl.edu.agh.to2.model;
+
+import jakarta.persistence.*;
+
+import java.io.Serializable;
+import java.util.Objects;
+
+// A distinct chunk of a ChunkedFile with the number of times it occurs in the file. Repeated chunks (zeroed
+// blocks of a disk image) take a single row, the primary key starts with the file so it also serves deletes.
+@Entity
+@IdClass(FileChunk.Key.class)
+@Table(indexes = @Index(name = "idx_file_chunk_hash", columnList = "hash"))
+public class FileChunk {
+    @Id
+    private long chunkedFileId;
+
+    // XXH64 of the content
+    @Id
+    private long hash;
+
+    @Column(nullable = false)
+    private int length;
+
+    @Column(nullable = false)
+    private int occurrences;
+
+    public FileChunk() {
+    }
+
+    public FileChunk(long chunkedFileId, long hash, int length, int occurrences) {
+        this.chunkedFileId = chunkedFileId;
+        this.hash = hash;
+        this.length = length;
+        this.occurrences = occurrences;
+    }
+
+    public long getChunkedFileId() {
+        return chunkedFileId;
+    }
+
+    public long getHash() {
+        return hash;
+    }
+
+    public int getLength() {
+        return length;
+    }
+
+    public int getOccurrences() {
+        return occurrences;
+    }
+
+    public static class Key implements Serializable {
+        private long chunkedFileId;
+        private long hash;
+
+        public Key() {
+        }
+
+        public Key(long chunkedFileId, long hash) {
+            this.chunkedFileId = chunkedFileId;
+            this.hash = hash;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            Key key = (Key) o;
+            return chunkedFileId == key.chunkedFileId && hash == key.hash;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(chunkedFileId, hash);
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package pl.edu.agh.to2.model;
+
+import jakarta.persistence.*;
+
+// A hash remembered for a file identity, so that renamed, moved or rescanned files are not read again
+@Entity
+@Table(
+        uniqueConstraints = @UniqueConstraint(
+                name = "uk_hash_cache_entry_key",
+                columnNames = {"fileKey", "size", "lastModified", "algorithm"}
+        ),
+        indexes = @Index(name = "idx_hash_cache_entry_last_used", columnList = "lastUsed")
+)
+public class HashCacheEntry {
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE)
+    private long id;
+
+    @Column(nullable = false)
+    private String fileKey;
+
+    @Column(nullable = false)
+    private long size;
+
+    @Column(nullable = false)
+    private long lastModified;
+
+    @Column(nullable = false)
+    private String algorithm;
+
+    @Column(nullable = false)
+    @Convert(converter = HexConverter.class)
+    private String hash;
+
+    @Column(nullable = false)
+    private long lastUsed;
+
+    public HashCacheEntry() {
+    }
+
+    public HashCacheEntry(String fileKey, long size, long lastModified, String algorithm, String hash, long lastUsed) {
+        this.fileKey = fileKey;
+        this.size = size;
+        this.lastModified = lastModified;
+        this.algorithm = algorithm;
+        this.hash = hash;
+        this.lastUsed = lastUsed;
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public String getFileKey() {
+        return fileKey;
+    }
+
+    public long getSize() {
+        return size;
+    }
+
+    public long getLastModified() {
+        return lastModified;
+    }
+
+    public String getAlgorithm() {
+        return algorithm;
+    }
+
+    public String getHash() {
+        return hash;
+    }
+
+    public long getLastUsed() {
+        return lastUsed;
+    }
+}
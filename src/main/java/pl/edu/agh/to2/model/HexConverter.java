@@ -0,0 +1,20 @@
+package pl.edu.agh.to2.model;
+
+import jakarta.persistence.AttributeConverter;
+import jakarta.persistence.Converter;
+
+import java.util.HexFormat;
+
+// Hashes are handled as hex strings but stored as bytea, half the size and cheaper to compare and index
+@Converter
+public class HexConverter implements AttributeConverter<String, byte[]> {
+    @Override
+    public byte[] convertToDatabaseColumn(String hex) {
+        return hex == null ? null : HexFormat.of().parseHex(hex);
+    }
+
+    @Override
+    public String convertToEntityAttribute(byte[] bytes) {
+        return bytes == null ? null : HexFormat.of().formatHex(bytes);
+    }
+}
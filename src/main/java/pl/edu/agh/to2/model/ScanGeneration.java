@@ -0,0 +1,50 @@
+package pl.edu.agh.to2.model;
+
+import jakarta.persistence.*;
+import pl.edu.agh.to2.types.ScanGenerationState;
+
+import java.time.LocalDateTime;
+
+// A full scan writes its rows into a new PENDING generation, which replaces the ACTIVE one only once the scan
+// has finished. Readers keep seeing the previous generation until then.
+@Entity
+public class ScanGeneration {
+    // Id of the generation visible to readers, 0 (rows from before generations) until the first full scan finishes
+    public static final String ACTIVE_ID_SQL =
+            "COALESCE((SELECT sg.id FROM scan_generation sg WHERE sg.state = 'ACTIVE'), 0)";
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE)
+    private long id;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false)
+    private ScanGenerationState state;
+
+    @Column(nullable = false)
+    private LocalDateTime createdAt;
+
+    public ScanGeneration() {
+    }
+
+    public ScanGeneration(ScanGenerationState state, LocalDateTime createdAt) {
+        this.state = state;
+        this.createdAt = createdAt;
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public ScanGenerationState getState() {
+        return state;
+    }
+
+    public void setState(ScanGenerationState state) {
+        this.state = state;
+    }
+
+    public LocalDateTime getCreatedAt() {
+        return createdAt;
+    }
+}
@@ -0,0 +1,5 @@
+package pl.edu.agh.to2.repository;
+
+// Chunked files of the index, their bytes and the bytes a block-level deduplicating store would not keep
+public record BlockDedupStats(long files, long bytes, long reclaimableBytes) {
+}
@@ -0,0 +1,67 @@
+package pl.edu.agh.to2.repository;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import pl.edu.agh.to2.model.ChunkedFile;
+import pl.edu.agh.to2.model.ScanGeneration;
+
+import java.util.List;
+
+public interface ChunkedFileRepository extends JpaRepository<ChunkedFile, Long> {
+    // Chunks of the files of the active generation, stale chunked files don't match any of them
+    String INDEXED_CHUNKS = "SELECT f.id AS file_id, c.hash, c.length, c.occurrences FROM file_chunk c " +
+            "JOIN chunked_file cf ON cf.id = c.chunked_file_id " +
+            "JOIN file f ON f.path = cf.path AND f.size = cf.size AND f.last_modified = cf.last_modified " +
+            "WHERE f.generation = " + ScanGeneration.ACTIVE_ID_SQL;
+
+    List<ChunkedFile> findByPath(String path);
+
+    @Modifying
+    @Query(value = "DELETE FROM file_chunk c WHERE c.chunked_file_id = :id", nativeQuery = true)
+    int deleteChunks(@Param("id") long id);
+
+    @Query(value = "WITH c AS (" + INDEXED_CHUNKS + "), " +
+            "h AS (SELECT hash, length, SUM(occurrences) AS n FROM c GROUP BY hash, length) " +
+            "SELECT (SELECT COUNT(DISTINCT file_id) FROM c), " +
+            "COALESCE(SUM(CAST(length AS bigint) * n), 0), COALESCE(SUM(CAST(length AS bigint) * (n - 1)), 0) FROM h",
+            nativeQuery = true)
+    List<Object[]> _findBlockDedupStats();
+
+    default BlockDedupStats findBlockDedupStats() {
+        Object[] row = _findBlockDedupStats().get(0);
+        return new BlockDedupStats(((Number) row[0]).longValue(), ((Number) row[1]).longValue(),
+                ((Number) row[2]).longValue());
+    }
+
+    // Pairs of files by the bytes of the chunks they share. Chunks found in more than maxFiles files (zeroed
+    // blocks, common headers) are left out, they would pair every file with every other one.
+    @Query(value = "WITH c AS (" + INDEXED_CHUNKS + "), " +
+            "shared AS (SELECT hash, length FROM c GROUP BY hash, length HAVING COUNT(*) BETWEEN 2 AND :maxFiles) " +
+            "SELECT a.file_id AS first_id, b.file_id AS second_id, " +
+            "SUM(CAST(a.length AS bigint) * LEAST(a.occurrences, b.occurrences)) AS shared_bytes " +
+            "FROM c a JOIN shared s ON s.hash = a.hash AND s.length = a.length " +
+            "JOIN c b ON b.hash = a.hash AND b.length = a.length AND b.file_id > a.file_id " +
+            "GROUP BY a.file_id, b.file_id ORDER BY shared_bytes DESC, first_id, second_id LIMIT :limit",
+            nativeQuery = true)
+    List<Object[]> _findSharedChunks(@Param("maxFiles") int maxFiles, @Param("limit") int limit);
+
+    default List<SharedChunks> findSharedChunks(int maxFiles, int limit) {
+        return _findSharedChunks(maxFiles, limit).stream()
+                .map(o -> new SharedChunks(((Number) o[0]).longValue(), ((Number) o[1]).longValue(),
+                        ((Number) o[2]).longValue()))
+                .toList();
+    }
+
+    // Chunked files that no file of any generation matches anymore, together with their chunks
+    @Modifying
+    @Query(value = "DELETE FROM chunked_file cf WHERE NOT EXISTS (SELECT 1 FROM file f " +
+            "WHERE f.path = cf.path AND f.size = cf.size AND f.last_modified = cf.last_modified)", nativeQuery = true)
+    int deleteOrphans();
+
+    @Modifying
+    @Query(value = "DELETE FROM file_chunk c WHERE NOT EXISTS " +
+            "(SELECT 1 FROM chunked_file cf WHERE cf.id = c.chunked_file_id)", nativeQuery = true)
+    int deleteOrphanChunks();
+}
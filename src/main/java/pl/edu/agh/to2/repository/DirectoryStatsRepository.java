@@ -0,0 +1,76 @@
+package pl.edu.agh.to2.repository;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import pl.edu.agh.to2.model.DirectoryStats;
+import pl.edu.agh.to2.model.ScanGeneration;
+
+import java.util.Collection;
+import java.util.List;
+
+public interface DirectoryStatsRepository extends JpaRepository<DirectoryStats, Long> {
+
+    // One grouped pass over the files of a generation: directory, file count, bytes, newest modification
+    // and bytes of files that have an identical copy. The directory is the path without "separator + name".
+    @Query(value = "SELECT d.directory, COUNT(*), SUM(d.size), MAX(d.last_modified), " +
+            "SUM(CASE WHEN d.copies > 1 THEN d.size ELSE 0 END) FROM (" +
+            "SELECT CASE WHEN length(f.path) > length(f.name) " +
+            "THEN left(f.path, length(f.path) - length(f.name) - 1) ELSE '' END AS directory, " +
+            "f.size, f.last_modified, " +
+            "CASE WHEN f.hash IS NULL THEN 1 " +
+            "ELSE COUNT(*) OVER (PARTITION BY f.size, f.hash, f.hash_algorithm) END AS copies " +
+            "FROM file f WHERE f.generation = :generation" +
+            ") d GROUP BY d.directory", nativeQuery = true)
+    List<Object[]> _findDirectoryTotals(@Param("generation") long generation);
+
+    default List<DirectoryTotals> findDirectoryTotals(long generation) {
+        return _findDirectoryTotals(generation).stream()
+                .map(o -> new DirectoryTotals((String) o[0], ((Number) o[1]).longValue(),
+                        ((Number) o[2]).longValue(), ((Number) o[3]).longValue(), ((Number) o[4]).longValue()))
+                .toList();
+    }
+
+    @Query("SELECT d FROM DirectoryStats d WHERE d.generation = :generation " +
+            "ORDER BY d.subtreeBytes DESC, d.path LIMIT :limit")
+    List<DirectoryStats> findLargestSubtrees(long generation, int limit);
+
+    @Query("SELECT d FROM DirectoryStats d WHERE d.generation = :generation AND d.path = :path")
+    List<DirectoryStats> findByGenerationAndPath(long generation, String path);
+
+    @Query("SELECT d FROM DirectoryStats d WHERE d.generation = :generation AND d.path IN :paths")
+    List<DirectoryStats> findByGenerationAndPathIn(long generation, Collection<String> paths);
+
+    @Modifying
+    @Query("DELETE FROM DirectoryStats d WHERE d.generation = :generation")
+    int deleteByGeneration(long generation);
+
+    // Same rule as FileRepository.deleteInactiveGenerations, there are few enough rows to do it at once
+    @Modifying
+    @Query(value = "DELETE FROM directory_stats d " +
+            "WHERE d.generation <> " + ScanGeneration.ACTIVE_ID_SQL + " " +
+            "AND d.generation NOT IN (SELECT sg.id FROM scan_generation sg WHERE sg.state = 'PENDING')",
+            nativeQuery = true)
+    int deleteInactiveGenerations();
+
+    // Rows read earlier in the transaction would keep the old totals otherwise
+    @Modifying(clearAutomatically = true)
+    @Query("UPDATE DirectoryStats d SET d.fileCount = d.fileCount - :count, d.totalBytes = d.totalBytes - :bytes, " +
+            "d.duplicateBytes = d.duplicateBytes - :duplicateBytes " +
+            "WHERE d.generation = :generation AND d.path = :path")
+    int subtractFiles(long generation, String path, long count, long bytes, long duplicateBytes);
+
+    @Modifying(clearAutomatically = true)
+    @Query("UPDATE DirectoryStats d SET d.subtreeFileCount = d.subtreeFileCount - :count, " +
+            "d.subtreeBytes = d.subtreeBytes - :bytes, " +
+            "d.subtreeDuplicateBytes = d.subtreeDuplicateBytes - :duplicateBytes " +
+            "WHERE d.generation = :generation AND d.path IN :paths")
+    int subtractSubtreeFiles(long generation, Collection<String> paths, long count, long bytes, long duplicateBytes);
+
+    // Directories left without files, a rebuild would not have a row for them either
+    @Modifying(clearAutomatically = true)
+    @Query("DELETE FROM DirectoryStats d " +
+            "WHERE d.generation = :generation AND d.path IN :paths AND d.subtreeFileCount <= 0")
+    int deleteEmptySubtrees(long generation, Collection<String> paths);
+}
@@ -0,0 +1,5 @@
+package pl.edu.agh.to2.repository;
+
+public record DirectoryTotals(String directory, long fileCount, long bytes, long maxLastModified,
+                              long duplicateBytes) {
+}
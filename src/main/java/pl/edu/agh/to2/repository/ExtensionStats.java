@@ -0,0 +1,8 @@
+package pl.edu.agh.to2.repository;
+
+public record ExtensionStats(
+        String extension,
+        long count,
+        long totalBytes
+) {
+}
@@ -0,0 +1,109 @@
+package pl.edu.agh.to2.repository;
+
+import org.postgresql.PGConnection;
+import org.springframework.jdbc.datasource.DataSourceUtils;
+import org.springframework.stereotype.Repository;
+import pl.edu.agh.to2.model.File;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.io.StringReader;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.HexFormat;
+import java.util.List;
+
+// Inserts new rows of the file table without going through the persistence context, streaming them with
+// COPY FROM STDIN, so it works only on PostgreSQL (the application and the tests run on it). Runs on the
+// connection of the current transaction, so it can be mixed with repository calls. Keep COLUMNS in line with File.
+@Repository
+public class FileBulkLoader {
+    private static final String COLUMNS =
+            "id, name, path, extension, size, last_modified, generation, hash, hash_algorithm, partial_hash, min_hash, " +
+                    "scan_mark";
+
+    private final DataSource dataSource;
+
+    public FileBulkLoader(DataSource dataSource) {
+        this.dataSource = dataSource;
+    }
+
+    public void insert(List<File> files) {
+        if (files.isEmpty()) {
+            return;
+        }
+        Connection connection = DataSourceUtils.getConnection(dataSource);
+        try {
+            if (!connection.isWrapperFor(PGConnection.class)) {
+                throw new IllegalStateException("Bulk inserts need a PostgreSQL connection");
+            }
+            copy(connection, files);
+        } catch (SQLException | IOException e) {
+            throw new RuntimeException("Error inserting files", e);
+        } finally {
+            DataSourceUtils.releaseConnection(connection, dataSource);
+        }
+    }
+
+    private void copy(Connection connection, List<File> files) throws SQLException, IOException {
+        long[] ids = nextIds(connection, files.size());
+        StringBuilder csv = new StringBuilder(files.size() * 200);
+        for (int i = 0; i < files.size(); i++) {
+            File file = files.get(i);
+            csv.append(ids[i]).append(',');
+            appendText(csv, file.getName()).append(',');
+            appendText(csv, file.getPath()).append(',');
+            appendText(csv, file.getExtension()).append(',');
+            csv.append(file.getSize()).append(',');
+            csv.append(file.getLastModified()).append(',');
+            csv.append(file.getGeneration()).append(',');
+            appendBytes(csv, file.getHash()).append(',');
+            appendText(csv, file.getHashAlgorithm()).append(',');
+            appendBytes(csv, file.getPartialHash()).append(',');
+            appendBytes(csv, file.getMinHash()).append(',');
+            if (file.getScanMark() != null) {
+                csv.append(file.getScanMark());
+            }
+            csv.append('\n');
+        }
+        connection.unwrap(PGConnection.class).getCopyAPI()
+                .copyIn("COPY file (" + COLUMNS + ") FROM STDIN WITH (FORMAT csv)", new StringReader(csv.toString()));
+    }
+
+    // Every value is taken from the sequence on its own, so the ids can't collide with the blocks
+    // Hibernate allocates from the same sequence
+    private static long[] nextIds(Connection connection, int count) throws SQLException {
+        long[] ids = new long[count];
+        try (PreparedStatement statement = connection.prepareStatement(
+                "SELECT nextval('file_seq') FROM generate_series(1, ?)")) {
+            statement.setInt(1, count);
+            try (ResultSet resultSet = statement.executeQuery()) {
+                for (int i = 0; i < count && resultSet.next(); i++) {
+                    ids[i] = resultSet.getLong(1);
+                }
+            }
+        }
+        return ids;
+    }
+
+    // In CSV an unquoted empty value is NULL and a quoted one is an empty string
+    private static StringBuilder appendText(StringBuilder csv, String value) {
+        if (value != null) {
+            csv.append('"').append(value.replace("\"", "\"\"")).append('"');
+        }
+        return csv;
+    }
+
+    private static StringBuilder appendBytes(StringBuilder csv, String hex) {
+        if (hex != null) {
+            csv.append("\\x").append(hex);
+        }
+        return csv;
+    }
+
+    private static StringBuilder appendBytes(StringBuilder csv, byte[] bytes) {
+        return appendBytes(csv, bytes == null ? null : HexFormat.of().formatHex(bytes));
+    }
+}
@@ -0,0 +1,44 @@
+package pl.edu.agh.to2.repository;
+
+import org.springframework.jdbc.datasource.DataSourceUtils;
+import org.springframework.stereotype.Repository;
+import pl.edu.agh.to2.model.FileChunk;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.List;
+
+// Inserts the chunks of a file as a JDBC batch on the connection of the current transaction. A large file
+// has thousands of them, going through the persistence context would cost a merge per row.
+@Repository
+public class FileChunkLoader {
+    private final DataSource dataSource;
+
+    public FileChunkLoader(DataSource dataSource) {
+        this.dataSource = dataSource;
+    }
+
+    public void insert(List<FileChunk> chunks) {
+        if (chunks.isEmpty()) {
+            return;
+        }
+        Connection connection = DataSourceUtils.getConnection(dataSource);
+        try (PreparedStatement statement = connection.prepareStatement(
+                "INSERT INTO file_chunk (chunked_file_id, hash, length, occurrences) VALUES (?, ?, ?, ?)")) {
+            for (FileChunk chunk : chunks) {
+                statement.setLong(1, chunk.getChunkedFileId());
+                statement.setLong(2, chunk.getHash());
+                statement.setInt(3, chunk.getLength());
+                statement.setInt(4, chunk.getOccurrences());
+                statement.addBatch();
+            }
+            statement.executeBatch();
+        } catch (SQLException e) {
+            throw new RuntimeException("Error inserting file chunks", e);
+        } finally {
+            DataSourceUtils.releaseConnection(connection, dataSource);
+        }
+    }
+}
@@ -0,0 +1,5 @@
+package pl.edu.agh.to2.repository;
+
+// see MinHasher
+public record FileMinHash(long id, byte[] minHash) {
+}
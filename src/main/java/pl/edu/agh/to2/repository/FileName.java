@@ -0,0 +1,4 @@
+package pl.edu.agh.to2.repository;
+
+public record FileName(long id, String name) {
+}
@@ -1,12 +1,15 @@
 package pl.edu.agh.to2.repository;
 
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 import pl.edu.agh.to2.model.File;
+import pl.edu.agh.to2.model.ScanGeneration;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
@@ -14,28 +17,145 @@ import java.util.stream.Collectors;
 
 @Repository
 public interface FileRepository extends JpaRepository<File, Long> {
+    // Paths starting with :prefix. The text_pattern_ops range can use idx_file_generation_path_pattern under any
+    // collation and with a bound prefix, which LIKE can't; starts_with drops what the range lets through and,
+    // unlike LIKE, takes % and _ in paths literally.
+    String UNDER_PREFIX = "f.path ~>=~ :prefix AND f.path ~<=~ (:prefix || chr(1114111)) " +
+            "AND starts_with(f.path, :prefix)";
+    String IN_ACTIVE_GENERATION = "f.generation = " + ScanGeneration.ACTIVE_ID_SQL;
 
     Optional<File> findByPath(String path);
 
-    List<File> findByPathStartingWith(String path);
+    @Query(value = "SELECT f.* FROM file f WHERE " + IN_ACTIVE_GENERATION + " AND " + UNDER_PREFIX,
+            nativeQuery = true)
+    List<File> findByPathStartingWith(@Param("prefix") String prefix);
 
-    @Query("SELECT f from File f WHERE f.path LIKE :path% ORDER BY f.size DESC LIMIT :limit")
-    List<File> findLargestFilesIn(String path, int limit);
+    // Keyset pagination in index order, a page starts after the last path of the previous one. skip is only
+    // for jumping ahead, the rows skipped are still read.
+    @Query(value = "SELECT f.* FROM file f WHERE " + IN_ACTIVE_GENERATION + " AND " + UNDER_PREFIX + " " +
+            "AND f.path ~>~ :afterPath ORDER BY f.path USING ~<~ OFFSET :skip LIMIT :limit", nativeQuery = true)
+    List<File> findPageByPathStartingWith(@Param("prefix") String prefix,
+                                          @Param("afterPath") String afterPath,
+                                          @Param("skip") int skip,
+                                          @Param("limit") int limit);
+
+    @Query(value = "SELECT COUNT(*) FROM file f WHERE " + IN_ACTIVE_GENERATION + " AND " + UNDER_PREFIX,
+            nativeQuery = true)
+    long countByPathStartingWith(@Param("prefix") String prefix);
+
+    // Small subtrees are read through the prefix range and sorted, for large ones idx_file_size_hash is
+    // walked from the largest size down until the limit is reached
+    @Query(value = "SELECT f.* FROM file f WHERE " + IN_ACTIVE_GENERATION + " AND " + UNDER_PREFIX + " " +
+            "ORDER BY f.size DESC LIMIT :limit", nativeQuery = true)
+    List<File> findLargestFilesIn(@Param("prefix") String prefix, @Param("limit") int limit);
+
+    @Query("SELECT f FROM File f WHERE f.size = :size AND f.hash = :hash AND f.hashAlgorithm = :algorithm")
+    List<File> findCopies(long size, String hash, String algorithm);
+
+    @Query("SELECT new pl.edu.agh.to2.repository.FileSnapshot(f.id, f.path, f.size, f.lastModified) FROM File f " +
+            "WHERE f.path IN :paths")
+    List<FileSnapshot> findSnapshotsByPathIn(@Param("paths") Collection<String> paths);
+
+    @Query("SELECT new pl.edu.agh.to2.repository.FileSnapshot(f.id, f.path, f.size, f.lastModified) FROM File f " +
+            "WHERE f.path IN :paths AND f.minHash IS NOT NULL")
+    List<FileSnapshot> findSketchedSnapshotsByPathIn(@Param("paths") Collection<String> paths);
+
+    // Marks of incremental scans, a row seen by a scan carries its mark, see FileScanner
+    @Query(value = "SELECT nextval('scan_mark_seq')", nativeQuery = true)
+    long nextScanMark();
+
+    @Modifying
+    @Query("UPDATE File f SET f.scanMark = :mark WHERE f.id IN :ids")
+    int markSeen(@Param("ids") Collection<Long> ids, @Param("mark") long mark);
+
+    @Query(value = "SELECT f.* FROM file f WHERE " + IN_ACTIVE_GENERATION + " AND " + UNDER_PREFIX +
+            " AND f.scan_mark IS DISTINCT FROM :mark LIMIT :limit", nativeQuery = true)
+    List<File> findUnseenUnder(@Param("prefix") String prefix, @Param("mark") long mark, @Param("limit") int limit);
+
+    @Modifying
+    @Query(value = "DELETE FROM file f WHERE " + IN_ACTIVE_GENERATION + " AND " + UNDER_PREFIX +
+            " AND f.scan_mark IS DISTINCT FROM :mark", nativeQuery = true)
+    int deleteUnseenUnder(@Param("prefix") String prefix, @Param("mark") long mark);
 
     @Modifying
     @Query("DELETE FROM File f WHERE f.path = :path")
     void deleteByPath(String path);
 
+    @Query(value = "SELECT f.* FROM file f WHERE " + IN_ACTIVE_GENERATION + " AND (f.path = :path OR (" +
+            UNDER_PREFIX + "))", nativeQuery = true)
+    List<File> findByPathOrUnder(@Param("path") String path, @Param("prefix") String prefix);
+
+    @Modifying
+    @Query(value = "DELETE FROM file f WHERE " + IN_ACTIVE_GENERATION + " AND (f.path = :path OR (" +
+            UNDER_PREFIX + "))", nativeQuery = true)
+    int deleteByPathOrUnder(@Param("path") String path, @Param("prefix") String prefix);
+
     @Modifying
     @Query("DELETE FROM File f")
     void deleteAll();
 
 
-    @Query("SELECT f FROM File f WHERE (f.hash, f.size) in " +
-            "(SELECT f.hash, f.size FROM File f GROUP BY f.hash, f.size HAVING COUNT(f) > 1) " +
+    // Files above minSize in a size group that still contains an unhashed file; hashed members need
+    // a partial hash as well, otherwise an unhashed duplicate of theirs would never collide
+    @Query("SELECT f FROM File f WHERE f.partialHash IS NULL AND f.size > :minSize AND f.id > :afterId AND f.size IN " +
+            "(SELECT g.size FROM File g GROUP BY g.size HAVING COUNT(g) > 1 AND COUNT(g) > COUNT(g.hash)) " +
+            "ORDER BY f.id")
+    List<File> findPartialHashCandidates(long minSize, long afterId, Pageable pageable);
+
+    @Query("SELECT f FROM File f WHERE f.hash IS NULL AND f.id > :afterId AND (" +
+            "(f.size <= :minSize AND f.size IN (SELECT g.size FROM File g GROUP BY g.size HAVING COUNT(g) > 1)) " +
+            "OR (f.size, f.partialHash) IN (SELECT g.size, g.partialHash FROM File g WHERE g.partialHash IS NOT NULL " +
+            "GROUP BY g.size, g.partialHash HAVING COUNT(g) > 1)) " +
+            "ORDER BY f.id")
+    List<File> findHashCandidates(long minSize, long afterId, Pageable pageable);
+
+    // Files that have not been chunked since they last changed, see ChunkIndex
+    @Query("SELECT f FROM File f WHERE f.size >= :minSize AND f.id > :afterId AND NOT EXISTS (" +
+            "SELECT c FROM ChunkedFile c WHERE c.path = f.path AND c.size = f.size AND c.lastModified = f.lastModified) " +
             "ORDER BY f.id")
+    List<File> findChunkCandidates(long minSize, long afterId, Pageable pageable);
+
+    @Query("SELECT COALESCE(SUM(f.size), 0) FROM File f WHERE f.hash IS NULL AND f.size IN " +
+            "(SELECT g.size FROM File g GROUP BY g.size HAVING COUNT(g) = 1)")
+    long sumUnhashedUniqueSizes();
+
+    // A single pass over idx_file_size_hash, the group sizes come from a window instead of a grouped subquery
+    @Query(value = "SELECT d.* FROM (" +
+            "SELECT f.*, COUNT(*) OVER (PARTITION BY f.size, f.hash, f.hash_algorithm) AS group_size " +
+            "FROM file f WHERE f.hash IS NOT NULL AND " + IN_ACTIVE_GENERATION +
+            ") d WHERE d.group_size > 1 ORDER BY d.id", nativeQuery = true)
     List<File> findDuplicates();
 
+    // Rows of retired or abandoned generations, the ones of scans still in progress are kept
+    @Modifying
+    @Query(value = "DELETE FROM file WHERE id IN (SELECT f.id FROM file f " +
+            "WHERE f.generation <> " + ScanGeneration.ACTIVE_ID_SQL + " " +
+            "AND f.generation NOT IN (SELECT sg.id FROM scan_generation sg WHERE sg.state = 'PENDING') " +
+            "LIMIT :limit)", nativeQuery = true)
+    int deleteInactiveGenerations(int limit);
+
+    @Query("SELECT COUNT(f) FROM File f WHERE f.hash IS NOT NULL AND f.hashAlgorithm <> :algorithm")
+    long countHashesOfOtherAlgorithms(String algorithm);
+
+    // Hashes of another algorithm can't be compared with the current ones, the files are hashed again when needed.
+    // Only the active generation is touched, the others are never read again.
+    @Modifying
+    @Query(value = "UPDATE file f SET hash = NULL, hash_algorithm = NULL " +
+            "WHERE f.hash IS NOT NULL AND f.hash_algorithm <> :algorithm AND " + IN_ACTIVE_GENERATION,
+            nativeQuery = true)
+    int clearHashesOfOtherAlgorithms(String algorithm);
+
+    @Query("SELECT new pl.edu.agh.to2.repository.FileName(f.id, f.name) FROM File f ORDER BY f.id")
+    List<FileName> findAllNames();
+
+    @Query("SELECT new pl.edu.agh.to2.repository.FileMinHash(f.id, f.minHash) FROM File f " +
+            "WHERE f.minHash IS NOT NULL ORDER BY f.id")
+    List<FileMinHash> findAllMinHashes();
+
+    @Query("SELECT new pl.edu.agh.to2.repository.FileMinHash(f.id, f.minHash) FROM File f WHERE f.id IN :ids")
+    List<FileMinHash> findMinHashesByIdIn(@Param("ids") Collection<Long> ids);
+
+    // Compares every pair of files, only usable on small indexes; see NameSimilarity
     @Query("SELECT levenshtein(f.name, g.name), f, g " +
             "FROM File f " +
             "INNER JOIN File g ON f.id < g.id " +
@@ -57,32 +177,51 @@ public interface FileRepository extends JpaRepository<File, Long> {
             "COALESCE(COUNT(f), 0)) FROM File f")
     FileSizeStats findFileSizeStats();
 
-    @Query("SELECT f.size FROM File f")
-    List<Long> findAllSizes();
+    @Query("SELECT new pl.edu.agh.to2.repository.ValueRange(MIN(f.size), MAX(f.size)) FROM File f")
+    ValueRange findSizeRange();
+
+    @Query("SELECT new pl.edu.agh.to2.repository.ValueRange(MIN(f.lastModified), MAX(f.lastModified)) FROM File f")
+    ValueRange findLastModifiedRange();
+
+    // Histogram buckets counted in the database, so only a row per non-empty bucket is sent. Bucket i holds
+    // the values with (value - min) * bucketCount / (max - min) = i in integer arithmetic, the maximum belongs
+    // to the last one. Needs min < max.
+    @Query(value = "SELECT LEAST((f.size - :min) * :bucketCount / (:max - :min), :bucketCount - 1), COUNT(*) " +
+            "FROM file f WHERE " + IN_ACTIVE_GENERATION + " GROUP BY 1", nativeQuery = true)
+    List<Object[]> _findSizeBuckets(@Param("min") long min,
+                                    @Param("max") long max,
+                                    @Param("bucketCount") int bucketCount);
+
+    @Query(value = "SELECT LEAST((f.last_modified - :min) * :bucketCount / (:max - :min), :bucketCount - 1), " +
+            "COUNT(*) FROM file f WHERE " + IN_ACTIVE_GENERATION + " GROUP BY 1", nativeQuery = true)
+    List<Object[]> _findLastModifiedBuckets(@Param("min") long min,
+                                            @Param("max") long max,
+                                            @Param("bucketCount") int bucketCount);
+
+    default long[] findSizeBuckets(long min, long max, int bucketCount) {
+        return toBuckets(_findSizeBuckets(min, max, bucketCount), bucketCount);
+    }
 
-    @Query("SELECT f.lastModified FROM File f")
-    List<Long> findAllLastModifiedInMilliseconds();
+    default long[] findLastModifiedBuckets(long min, long max, int bucketCount) {
+        return toBuckets(_findLastModifiedBuckets(min, max, bucketCount), bucketCount);
+    }
 
-    @Query(value = "SELECT " +
-            "CASE " +
-            "  WHEN f.name NOT LIKE '%.%' THEN '' " +
-            "  ELSE split_part(f.name, '.', -1) " +
-            "END AS extension, " +
-            "COUNT(f.id) " +
-            "FROM File f " +
-            "GROUP BY " +
-            "CASE " +
-            "  WHEN f.name NOT LIKE '%.%' THEN '' " +
-            "  ELSE split_part(f.name, '.', -1) " +
-            "END",
-            nativeQuery = true
-    )
-    List<Object[]> _findFileCountsByExtension();
+    private static long[] toBuckets(List<Object[]> rows, int bucketCount) {
+        long[] buckets = new long[bucketCount];
+        for (Object[] row : rows) {
+            buckets[((Number) row[0]).intValue()] = ((Number) row[1]).longValue();
+        }
+        return buckets;
+    }
 
+    // A grouped scan of idx_file_generation_extension_size, the extension is stored at ingest
+    @Query("SELECT new pl.edu.agh.to2.repository.ExtensionStats(f.extension, COUNT(f), COALESCE(SUM(f.size), 0)) " +
+            "FROM File f GROUP BY f.extension")
+    List<ExtensionStats> findExtensionStats();
 
     default Map<String, Long> findFileCountsByExtension() {
-        return _findFileCountsByExtension().stream()
-                .collect(Collectors.toMap(o -> (String) o[0], o -> (Long) o[1]));
+        return findExtensionStats().stream()
+                .collect(Collectors.toMap(ExtensionStats::extension, ExtensionStats::count));
     }
 }
 
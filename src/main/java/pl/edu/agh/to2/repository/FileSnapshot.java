@@ -0,0 +1,4 @@
+package pl.edu.agh.to2.repository;
+
+public record FileSnapshot(long id, String path, long size, long lastModified) {
+}
@@ -0,0 +1,25 @@
+package pl.edu.agh.to2.repository;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import pl.edu.agh.to2.model.HashCacheEntry;
+
+import java.util.Collection;
+import java.util.Optional;
+
+public interface HashCacheRepository extends JpaRepository<HashCacheEntry, Long> {
+    Optional<HashCacheEntry> findByFileKeyAndSizeAndLastModifiedAndAlgorithm(String fileKey,
+                                                                             long size,
+                                                                             long lastModified,
+                                                                             String algorithm);
+
+    @Modifying
+    @Query("UPDATE HashCacheEntry e SET e.lastUsed = :lastUsed WHERE e.id IN :ids")
+    int touch(Collection<Long> ids, long lastUsed);
+
+    @Modifying
+    @Query(value = "DELETE FROM hash_cache_entry WHERE id IN " +
+            "(SELECT id FROM hash_cache_entry ORDER BY last_used, id LIMIT :count)", nativeQuery = true)
+    int deleteLeastRecentlyUsed(long count);
+}
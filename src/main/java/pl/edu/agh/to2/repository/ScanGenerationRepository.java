@@ -0,0 +1,20 @@
+package pl.edu.agh.to2.repository;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import pl.edu.agh.to2.model.ScanGeneration;
+import pl.edu.agh.to2.types.ScanGenerationState;
+
+import java.util.List;
+
+public interface ScanGenerationRepository extends JpaRepository<ScanGeneration, Long> {
+    List<ScanGeneration> findAllByState(ScanGenerationState state);
+
+    @Query(value = "SELECT " + ScanGeneration.ACTIVE_ID_SQL, nativeQuery = true)
+    long findActiveId();
+
+    @Modifying
+    @Query("DELETE FROM ScanGeneration g WHERE g.state = :state")
+    int deleteAllByState(ScanGenerationState state);
+}
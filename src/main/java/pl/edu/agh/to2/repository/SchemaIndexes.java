@@ -0,0 +1,54 @@
+package pl.edu.agh.to2.repository;
+
+import jakarta.annotation.PostConstruct;
+import org.postgresql.PGConnection;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+
+// Indexes that can't be declared with @Index, e.g. ones with an operator class or a predicate. They are created once Hibernate
+// has created or updated the tables, schema.sql runs too early for that. CONCURRENTLY keeps an existing
+// table writable while its index is being built, after that the statements are no-ops.
+@Component
+@DependsOn("entityManagerFactory")
+public class SchemaIndexes {
+    private static final Logger logger = LoggerFactory.getLogger(SchemaIndexes.class);
+    private static final List<String> INDEXES = List.of(
+            // Byte-wise path order for subtree queries, the collation-aware idx_file_path can't serve prefix ranges
+            "CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_file_generation_path_pattern " +
+                    "ON file (generation, path text_pattern_ops)",
+            // ScanGeneration.ACTIVE_ID_SQL is a scalar subquery, a second ACTIVE row would break every file query
+            "CREATE UNIQUE INDEX CONCURRENTLY IF NOT EXISTS uk_scan_generation_active " +
+                    "ON scan_generation (state) WHERE state = 'ACTIVE'"
+    );
+
+    private final DataSource dataSource;
+
+    public SchemaIndexes(DataSource dataSource) {
+        this.dataSource = dataSource;
+    }
+
+    @PostConstruct
+    public void createIndexes() {
+        try (Connection connection = dataSource.getConnection()) {
+            if (!connection.isWrapperFor(PGConnection.class)) {
+                return;
+            }
+            connection.setAutoCommit(true);
+            try (Statement statement = connection.createStatement()) {
+                for (String index : INDEXES) {
+                    statement.execute(index);
+                }
+            }
+        } catch (SQLException e) {
+            logger.error("Could not create indexes", e);
+        }
+    }
+}
@@ -0,0 +1,4 @@
+package pl.edu.agh.to2.repository;
+
+public record SharedChunks(long firstId, long secondId, long sharedBytes) {
+}
@@ -0,0 +1,5 @@
+package pl.edu.agh.to2.repository;
+
+// Both null when there are no files
+public record ValueRange(Long min, Long max) {
+}
@@ -0,0 +1,75 @@
+package pl.edu.agh.to2.service;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Map;
+
+// Burkhard-Keller tree over code point strings. Children are keyed by their distance to the parent, so by the
+// triangle inequality a search within maxDistance only descends into children keyed parent distance +- maxDistance.
+final class BkTree {
+    private Node root;
+    private long comparisons;
+
+    void add(int[] word, int index) {
+        Node node = new Node(word, index);
+        if (root == null) {
+            root = node;
+            return;
+        }
+        Node parent = root;
+        while (true) {
+            int distance = Levenshtein.distance(word, parent.word);
+            comparisons++;
+            Node child = parent.children.get(distance);
+            if (child == null) {
+                parent.children.put(distance, node);
+                return;
+            }
+            parent = child;
+        }
+    }
+
+    // Iterative, degenerate trees can be deeper than the stack allows
+    void search(int[] word, int maxDistance, Match match) {
+        if (root == null) {
+            return;
+        }
+        Deque<Node> pending = new ArrayDeque<>();
+        pending.push(root);
+        while (!pending.isEmpty()) {
+            Node node = pending.pop();
+            int distance = Levenshtein.distance(word, node.word);
+            comparisons++;
+            if (distance <= maxDistance) {
+                match.found(node.index, distance);
+            }
+            for (Map.Entry<Integer, Node> child : node.children.entrySet()) {
+                if (Math.abs(child.getKey() - distance) <= maxDistance) {
+                    pending.push(child.getValue());
+                }
+            }
+        }
+    }
+
+    // Edit distances computed so far, to build the tree and to search it
+    long getComparisons() {
+        return comparisons;
+    }
+
+    @FunctionalInterface
+    interface Match {
+        void found(int index, int distance);
+    }
+
+    private static final class Node {
+        private final int[] word;
+        private final int index;
+        private final Map<Integer, Node> children = new HashMap<>(4);
+
+        Node(int[] word, int index) {
+            this.word = word;
+            this.index = index;
+        }
+    }
+}
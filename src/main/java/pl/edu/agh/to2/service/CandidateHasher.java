@@ -0,0 +1,131 @@
+package pl.edu.agh.to2.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import pl.edu.agh.to2.model.File;
+import pl.edu.agh.to2.repository.FileRepository;
+
+import java.io.IOException;
+import java.nio.file.FileSystem;
+import java.util.List;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
+
+// Computes the hashes deferred by a LAZY scan in tiers, each one reading more than the previous:
+// files with a unique size are never read, files larger than two partial blocks get a partial hash
+// of their head and tail first, and only files that still collide are hashed in full.
+@Component
+public class CandidateHasher {
+    private static final Logger logger = LoggerFactory.getLogger(CandidateHasher.class);
+    private final FileRepository fileRepository;
+    private final FileHasher fileHasher;
+    private final HashCache hashCache;
+    private final PartialFileHasher partialFileHasher;
+    private final TransactionTemplate transactionTemplate;
+    private final int batchSize;
+    // Files up to this size are hashed in full right away, a partial hash would read all of them anyway
+    private final long minPartialSize;
+
+    public CandidateHasher(FileRepository fileRepository,
+                           FileHasher fileHasher,
+                           HashCache hashCache,
+                           PlatformTransactionManager transactionManager,
+                           @Value("${file-cleaner.scan.batch-size:500}") int batchSize,
+                           @Value("${file-cleaner.hash.partial-kb:64}") int partialKb) {
+        this.fileRepository = fileRepository;
+        this.fileHasher = fileHasher;
+        this.hashCache = hashCache;
+        this.partialFileHasher = partialKb > 0 ? new PartialFileHasher(partialKb * 1024) : null;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.batchSize = batchSize;
+        this.minPartialSize = partialKb > 0 ? 2L * partialKb * 1024 : Long.MAX_VALUE;
+    }
+
+    public HashingTierMetrics hashCandidates(FileSystem fileSystem) {
+        clearOutdatedHashes();
+        long partialBytesBefore = partialFileHasher == null ? 0 : partialFileHasher.getBytesRead();
+        long[] partialTier = new long[2]; // files, bytes of the files that had no full hash yet
+        long[] fullTier = new long[3];    // files, bytes read, bytes of the files that went through the partial tier
+
+        if (partialFileHasher != null) {
+            forEachCandidate(
+                    (afterId, page) -> fileRepository.findPartialHashCandidates(minPartialSize, afterId, page),
+                    file -> {
+                        file.setPartialHash(tryToHash(partialFileHasher, fileSystem, file));
+                        if (file.getPartialHash() != null) {
+                            partialTier[0]++;
+                            if (file.getHash() == null) {
+                                partialTier[1] += file.getSize();
+                            }
+                        }
+                    });
+        }
+        forEachCandidate(
+                (afterId, page) -> fileRepository.findHashCandidates(minPartialSize, afterId, page),
+                file -> {
+                    String hash = tryToHash(path -> hashCache.hash(fileHasher, path), fileSystem, file);
+                    file.setHash(hash, hash == null ? null : fileHasher.algorithm());
+                    if (file.getHash() != null) {
+                        fullTier[0]++;
+                        fullTier[1] += file.getSize();
+                        if (file.getPartialHash() != null) {
+                            fullTier[2] += file.getSize();
+                        }
+                    }
+                });
+
+        hashCache.flush();
+        long partialBytesRead = partialFileHasher == null ? 0 : partialFileHasher.getBytesRead() - partialBytesBefore;
+        HashingTierMetrics metrics = new HashingTierMetrics(
+                fileRepository.sumUnhashedUniqueSizes(),
+                partialTier[0],
+                partialBytesRead,
+                Math.max(0, partialTier[1] - fullTier[2] - partialBytesRead),
+                fullTier[0],
+                fullTier[1]
+        );
+        if (metrics.partialTierFiles() > 0 || metrics.fullTierFiles() > 0) {
+            logger.info("Hashed duplicate candidates: {}", metrics);
+        }
+        return metrics;
+    }
+
+    // Walks the candidates by id so that files updated by a batch don't shift the following pages
+    // Usually there is nothing to clear, the count keeps the update (and its row locks) for when the algorithm changed
+    private void clearOutdatedHashes() {
+        String algorithm = fileHasher.algorithm();
+        if (fileRepository.countHashesOfOtherAlgorithms(algorithm) == 0) {
+            return;
+        }
+        int outdated = transactionTemplate.execute(status -> fileRepository.clearHashesOfOtherAlgorithms(algorithm));
+        logger.info("Cleared {} hashes computed with an algorithm other than {}", outdated, algorithm);
+    }
+
+    private void forEachCandidate(BiFunction<Long, Pageable, List<File>> query, Consumer<File> action) {
+        long afterId = 0;
+        while (afterId != -1) {
+            long from = afterId;
+            afterId = transactionTemplate.execute(status -> {
+                List<File> candidates = query.apply(from, PageRequest.of(0, batchSize));
+                candidates.forEach(action);
+                return candidates.isEmpty() ? -1L : candidates.get(candidates.size() - 1).getId();
+            });
+        }
+    }
+
+    private String tryToHash(FileHasher hasher, FileSystem fileSystem, File file) {
+        try {
+            return hasher.hash(fileSystem.getPath(file.getPath()));
+        } catch (IOException e) {
+            // The file may have been removed since the scan, it stays without a hash
+            logger.error("Error hashing file: {}", file.getPath(), e);
+            return null;
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package pl.edu.agh.to2.service;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+
+// SHA-256 over a FileChannel, the way of reading depends on the file size: small files are read in one go
+// into a heap buffer, medium ones in chunks into a reused direct buffer and large ones are mapped window by window.
+public class ChannelFileHasher implements FileHasher {
+    private static final int SMALL_FILE_SIZE = 64 * 1024;
+    private static final int DIRECT_BUFFER_SIZE = 1024 * 1024;
+    private static final long MAPPED_WINDOW_SIZE = 256L * 1024 * 1024;
+
+    private final long mapThreshold;
+    private final long mappedWindowSize;
+    private final ThreadLocal<ByteBuffer> directBuffers =
+            ThreadLocal.withInitial(() -> ByteBuffer.allocateDirect(DIRECT_BUFFER_SIZE));
+
+    public ChannelFileHasher(long mapThreshold) {
+        this(mapThreshold, MAPPED_WINDOW_SIZE);
+    }
+
+    ChannelFileHasher(long mapThreshold, long mappedWindowSize) {
+        this.mapThreshold = mapThreshold;
+        this.mappedWindowSize = mappedWindowSize;
+    }
+
+    @Override
+    public String hash(Path path) throws IOException {
+        MessageDigest digest = newDigest();
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size <= SMALL_FILE_SIZE) {
+                readAll(channel, ByteBuffer.allocate((int) size + 1), digest);
+            } else if (size < mapThreshold || !readMapped(channel, size, digest)) {
+                readAll(channel, directBuffers.get(), digest);
+            }
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    private void readAll(FileChannel channel, ByteBuffer buffer, MessageDigest digest) throws IOException {
+        buffer.clear();
+        while (channel.read(buffer) != -1) {
+            buffer.flip();
+            digest.update(buffer);
+            buffer.clear();
+        }
+    }
+
+    // Returns false when the file system can't map files, nothing has been read then
+    private boolean readMapped(FileChannel channel, long size, MessageDigest digest) throws IOException {
+        for (long position = 0; position < size; position += mappedWindowSize) {
+            ByteBuffer window;
+            try {
+                window = channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(mappedWindowSize, size - position));
+            } catch (UnsupportedOperationException e) {
+                if (position == 0) {
+                    return false;
+                }
+                throw e;
+            }
+            digest.update(window);
+        }
+        return true;
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException("SHA-256 algorithm not available", e);
+        }
+    }
+}
@@ -0,0 +1,187 @@
+package pl.edu.agh.to2.service;
+
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import pl.edu.agh.to2.model.ChunkedFile;
+import pl.edu.agh.to2.model.File;
+import pl.edu.agh.to2.model.FileChunk;
+import pl.edu.agh.to2.repository.BlockDedupStats;
+import pl.edu.agh.to2.repository.ChunkedFileRepository;
+import pl.edu.agh.to2.repository.FileChunkLoader;
+import pl.edu.agh.to2.repository.FileRepository;
+import pl.edu.agh.to2.repository.SharedChunks;
+
+import java.io.IOException;
+import java.nio.file.FileSystem;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+// Chunk hashes of large files, for content they share without being identical (VM images, backups, rotated
+// logs). The scanner hands it over to a single background thread once a scan is stored, it only reads files
+// that changed since they were chunked and the reports just query what has been chunked so far. Every distinct
+// chunk of a file is a row of about 20 bytes, so the index holds roughly (indexed bytes / average chunk size)
+// rows: about 4 million for 1 TB with the default 256 KB chunks.
+@Component
+public class ChunkIndex {
+    private static final Logger logger = LoggerFactory.getLogger(ChunkIndex.class);
+
+    private final FileRepository fileRepository;
+    private final ChunkedFileRepository chunkedFileRepository;
+    private final FileChunkLoader fileChunkLoader;
+    private final TransactionTemplate transactionTemplate;
+    private final ContentChunker chunker;
+    private final boolean enabled;
+    private final long minFileSize;
+    private final int maxFilesPerChunk;
+    private final int batchSize;
+    // Set while an update waits for the thread, scans finishing in the meantime don't queue another one
+    private final AtomicBoolean updateQueued = new AtomicBoolean();
+    private final ExecutorService updater = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "chunk-indexer");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public ChunkIndex(FileRepository fileRepository,
+                      ChunkedFileRepository chunkedFileRepository,
+                      FileChunkLoader fileChunkLoader,
+                      PlatformTransactionManager transactionManager,
+                      @Value("${file-cleaner.chunking.enabled:false}") boolean enabled,
+                      @Value("${file-cleaner.chunking.average-chunk-kb:256}") int averageChunkKb,
+                      @Value("${file-cleaner.chunking.min-file-mb:8}") long minFileMb,
+                      @Value("${file-cleaner.chunking.max-files-per-chunk:100}") int maxFilesPerChunk,
+                      @Value("${file-cleaner.scan.batch-size:500}") int batchSize) {
+        this.fileRepository = fileRepository;
+        this.chunkedFileRepository = chunkedFileRepository;
+        this.fileChunkLoader = fileChunkLoader;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.chunker = new ContentChunker(averageChunkKb * 1024);
+        this.enabled = enabled;
+        this.minFileSize = minFileMb * 1024 * 1024;
+        this.maxFilesPerChunk = maxFilesPerChunk;
+        this.batchSize = batchSize;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    // Called by the scanner after it has stored its changes
+    public void updateInBackground(FileSystem fileSystem) {
+        if (!enabled || !updateQueued.compareAndSet(false, true)) {
+            return;
+        }
+        updater.submit(() -> {
+            updateQueued.set(false);
+            try {
+                update(fileSystem);
+            } catch (RuntimeException e) {
+                logger.error("Error updating the chunk index", e);
+            }
+        });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        updater.shutdownNow();
+    }
+
+    // Chunks the files of at least min-file-mb that are new or changed, returns how many were chunked.
+    // Synchronized so that two updates of this process don't chunk the same file twice.
+    public synchronized long update(FileSystem fileSystem) {
+        if (!enabled) {
+            return 0;
+        }
+        long chunked = 0;
+        long bytes = 0;
+        long afterId = 0;
+        while (true) {
+            List<File> candidates = fileRepository.findChunkCandidates(minFileSize, afterId,
+                    PageRequest.of(0, batchSize));
+            if (candidates.isEmpty()) {
+                break;
+            }
+            for (File file : candidates) {
+                if (index(file, fileSystem)) {
+                    chunked++;
+                    bytes += file.getSize();
+                }
+            }
+            afterId = candidates.get(candidates.size() - 1).getId();
+        }
+        if (chunked > 0) {
+            logger.info("Chunked {} files, {} bytes, average chunk size {} bytes",
+                    chunked, bytes, chunker.getAverageSize());
+        }
+        return chunked;
+    }
+
+    public BlockDedupStats getBlockDedupStats() {
+        return chunkedFileRepository.findBlockDedupStats();
+    }
+
+    public List<SharedChunks> findSharedChunks(int limit) {
+        return chunkedFileRepository.findSharedChunks(maxFilesPerChunk, limit);
+    }
+
+    // Chunks of files that are no longer in the index, called with the garbage of old scan generations
+    public void deleteOrphans() {
+        int files = transactionTemplate.execute(status -> chunkedFileRepository.deleteOrphans());
+        int chunks = transactionTemplate.execute(status -> chunkedFileRepository.deleteOrphanChunks());
+        if (files > 0) {
+            logger.info("Deleted {} chunked files and {} chunks of files no longer indexed", files, chunks);
+        }
+    }
+
+    // The file is read before the transaction starts, a failed read leaves it to the next update
+    private boolean index(File file, FileSystem fileSystem) {
+        Map<Long, int[]> chunks = new LinkedHashMap<>(); // hash -> length, occurrences
+        int[] chunkCount = new int[1];
+        try {
+            chunker.chunk(fileSystem.getPath(file.getPath()), (hash, length) -> {
+                chunks.computeIfAbsent(hash, key -> new int[]{length, 0})[1]++;
+                chunkCount[0]++;
+            });
+        } catch (IOException e) {
+            logger.error("Error chunking file: {}", file.getPath(), e);
+            return false;
+        }
+
+        try {
+            store(file, chunks, chunkCount[0]);
+        } catch (DataIntegrityViolationException e) {
+            // Another process has chunked the same version of the file in the meantime
+            logger.debug("File {} is already chunked", file.getPath());
+            return false;
+        }
+        return true;
+    }
+
+    private void store(File file, Map<Long, int[]> chunks, int chunkCount) {
+        transactionTemplate.executeWithoutResult(status -> {
+            for (ChunkedFile previous : chunkedFileRepository.findByPath(file.getPath())) {
+                chunkedFileRepository.deleteChunks(previous.getId());
+                chunkedFileRepository.delete(previous);
+            }
+            // Flushed so that the old row is gone before the new one takes its unique key
+            chunkedFileRepository.flush();
+            ChunkedFile chunkedFile = chunkedFileRepository.save(
+                    new ChunkedFile(file.getPath(), file.getSize(), file.getLastModified(), chunkCount));
+            List<FileChunk> rows = new ArrayList<>(chunks.size());
+            chunks.forEach((hash, chunk) -> rows.add(new FileChunk(chunkedFile.getId(), hash, chunk[0], chunk[1])));
+            fileChunkLoader.insert(rows);
+        });
+    }
+}
@@ -0,0 +1,91 @@
+package pl.edu.agh.to2.service;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.SplittableRandom;
+
+// Content-defined chunking in the style of FastCDC: a gear rolling hash over the bytes of a chunk cuts it where
+// the hash matches a mask, so an insertion only moves the boundaries next to it and the rest of the chunks of
+// an edited file stay the same. The first minSize bytes of a chunk are not hashed at all, a stricter mask up to
+// the average size and a looser one after it keep the sizes close to the average, maxSize is a hard limit.
+// Every chunk is identified by its XXH64 hash.
+public class ContentChunker {
+    private static final int BUFFER_SIZE = 1024 * 1024;
+    // Chunk boundaries depend on the table, changing the seed makes stored chunk hashes incomparable
+    private static final long[] GEAR = new long[256];
+
+    static {
+        SplittableRandom random = new SplittableRandom(0x6A09E667F3BCC908L);
+        for (int i = 0; i < GEAR.length; i++) {
+            GEAR[i] = random.nextLong();
+        }
+    }
+
+    private final int minSize;
+    private final int averageSize;
+    private final int maxSize;
+    private final long strictMask;
+    private final long looseMask;
+
+    // averageSize is rounded down to a power of two
+    public ContentChunker(int averageSize) {
+        int bits = 31 - Integer.numberOfLeadingZeros(averageSize);
+        this.averageSize = 1 << bits;
+        this.minSize = this.averageSize / 4;
+        this.maxSize = this.averageSize * 8;
+        // The hash is shifted left, its top bits depend on the last bytes only
+        this.strictMask = topBits(bits + 1);
+        this.looseMask = topBits(bits - 1);
+    }
+
+    public void chunk(Path path, ChunkConsumer consumer) throws IOException {
+        XxHash64FileHasher.XxHash64 hash = new XxHash64FileHasher.XxHash64();
+        long fingerprint = 0;
+        int length = 0;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            ByteBuffer buffer = ByteBuffer.allocate((int) Math.min(BUFFER_SIZE, channel.size() + 1));
+            int read;
+            while ((read = channel.read(buffer)) != -1) {
+                byte[] array = buffer.array();
+                int chunkStart = 0;
+                for (int i = 0; i < read; i++) {
+                    length++;
+                    if (length <= minSize) {
+                        continue;
+                    }
+                    fingerprint = (fingerprint << 1) + GEAR[array[i] & 0xFF];
+                    long mask = length < averageSize ? strictMask : looseMask;
+                    if ((fingerprint & mask) == 0 || length == maxSize) {
+                        hash.update(array, chunkStart, i + 1 - chunkStart);
+                        consumer.chunk(hash.digest(), length);
+                        hash = new XxHash64FileHasher.XxHash64();
+                        chunkStart = i + 1;
+                        fingerprint = 0;
+                        length = 0;
+                    }
+                }
+                hash.update(array, chunkStart, read - chunkStart);
+                buffer.clear();
+            }
+        }
+        if (length > 0) {
+            consumer.chunk(hash.digest(), length);
+        }
+    }
+
+    public int getAverageSize() {
+        return averageSize;
+    }
+
+    private static long topBits(int count) {
+        return count <= 0 ? 0 : -1L << (Long.SIZE - count);
+    }
+
+    @FunctionalInterface
+    public interface ChunkConsumer {
+        void chunk(long hash, int length);
+    }
+}
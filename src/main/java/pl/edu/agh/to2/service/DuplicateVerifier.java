@@ -0,0 +1,211 @@
+package pl.edu.agh.to2.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import pl.edu.agh.to2.model.File;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.FileSystem;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Proof beyond a hash match: the members of every duplicate group are compared byte for byte, block by block
+// at aligned offsets, and groups are split where the contents differ. Members that differ from all the others
+// are not read any further, a group in which every member differs stops at that block. Groups are compared
+// in parallel, each by a single thread that keeps one block of every distinct variant in memory.
+@Component
+public class DuplicateVerifier {
+    private static final Logger logger = LoggerFactory.getLogger(DuplicateVerifier.class);
+    // Direct buffers are aligned to a page, so are the read offsets as multiples of the block size
+    private static final int ALIGNMENT = 4096;
+
+    private final boolean enabled;
+    private final int blockSize;
+    private final int threads;
+
+    public DuplicateVerifier(@Value("${file-cleaner.verify.enabled:false}") boolean enabled,
+                             @Value("${file-cleaner.verify.block-kb:1024}") int blockKb,
+                             @Value("${file-cleaner.verify.threads:0}") int threads) {
+        this.enabled = enabled;
+        this.blockSize = Math.max(ALIGNMENT, blockKb * 1024 / ALIGNMENT * ALIGNMENT);
+        this.threads = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+    }
+
+    // The groups unchanged unless file-cleaner.verify.enabled is set
+    public List<List<File>> verify(List<List<File>> groups, FileSystem fileSystem) {
+        return enabled ? compare(groups, fileSystem).groups() : groups;
+    }
+
+    public Verification compare(List<List<File>> groups, FileSystem fileSystem) {
+        long start = System.nanoTime();
+        AtomicLong bytesCompared = new AtomicLong();
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, Math.min(threads, groups.size())));
+        List<List<File>> verified = new ArrayList<>();
+        int splitGroups = 0;
+        try {
+            List<Future<List<List<File>>>> results = new ArrayList<>(groups.size());
+            for (List<File> group : groups) {
+                results.add(executor.submit(() -> compareGroup(group, fileSystem, bytesCompared)));
+            }
+            for (int i = 0; i < groups.size(); i++) {
+                List<List<File>> parts = results.get(i).get();
+                verified.addAll(parts);
+                if (parts.size() != 1 || parts.get(0).size() != groups.get(i).size()) {
+                    splitGroups++;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Verification of duplicates interrupted", e);
+        } catch (ExecutionException e) {
+            throw new RuntimeException("Error verifying duplicates", e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+
+        Verification verification = new Verification(verified, groups.size(), splitGroups, bytesCompared.get(),
+                System.nanoTime() - start);
+        logger.info("Verified {} duplicate groups byte for byte: {} bytes compared in {} ms ({} MB/s), {} groups split",
+                groups.size(), verification.bytesCompared(), verification.nanos() / 1_000_000,
+                verification.bytesPerSecond() / (1024 * 1024), splitGroups);
+        if (splitGroups > 0) {
+            logger.warn("{} duplicate groups had members with different contents or unreadable members", splitGroups);
+        }
+        return verification;
+    }
+
+    // Members with equal contents, in the order of the group. Members that could not be read or whose size
+    // changed since the scan are left out.
+    private List<List<File>> compareGroup(List<File> group, FileSystem fileSystem, AtomicLong bytesCompared) {
+        List<Member> members = new ArrayList<>(group.size());
+        try {
+            for (File file : group) {
+                try {
+                    FileChannel channel = FileChannel.open(fileSystem.getPath(file.getPath()), StandardOpenOption.READ);
+                    if (channel.size() == file.getSize()) {
+                        members.add(new Member(file, channel));
+                    } else {
+                        logger.warn("File changed since it was scanned: {}", file.getPath());
+                        channel.close();
+                    }
+                } catch (IOException e) {
+                    logger.error("Error opening file: {}", file.getPath(), e);
+                }
+            }
+
+            long size = group.isEmpty() ? 0 : group.get(0).getSize();
+            BlockBuffers buffers = new BlockBuffers((int) Math.min(blockSize, Math.max(size, 1)));
+            List<List<Member>> sets = members.size() > 1 ? List.of(members) : List.of();
+            for (long position = 0; position < size && !sets.isEmpty(); position += blockSize) {
+                List<List<Member>> next = new ArrayList<>();
+                for (List<Member> set : sets) {
+                    for (List<Member> part : split(set, position, buffers, bytesCompared)) {
+                        if (part.size() > 1) {
+                            next.add(part);
+                        }
+                    }
+                }
+                sets = next;
+            }
+            return sets.stream()
+                    .map(set -> set.stream().map(Member::file).toList())
+                    .toList();
+        } finally {
+            for (Member member : members) {
+                try {
+                    member.channel().close();
+                } catch (IOException e) {
+                    logger.error("Error closing file: {}", member.file().getPath(), e);
+                }
+            }
+        }
+    }
+
+    // Members grouped by the content of the block at position, each variant is compared with one block only
+    private List<List<Member>> split(List<Member> set, long position, BlockBuffers buffers, AtomicLong bytesCompared) {
+        List<List<Member>> parts = new ArrayList<>();
+        buffers.release();
+        for (Member member : set) {
+            ByteBuffer block = buffers.acquire();
+            try {
+                readBlock(member.channel(), position, block);
+            } catch (IOException e) {
+                logger.error("Error reading file: {}", member.file().getPath(), e);
+                buffers.giveBack();
+                continue;
+            }
+            bytesCompared.addAndGet(block.remaining());
+
+            int variant = 0;
+            while (variant < parts.size() && buffers.get(variant).mismatch(block) != -1) {
+                variant++;
+            }
+            if (variant < parts.size()) {
+                buffers.giveBack();
+            } else {
+                parts.add(new ArrayList<>());
+            }
+            parts.get(variant).add(member);
+        }
+        return parts;
+    }
+
+    private static void readBlock(FileChannel channel, long position, ByteBuffer block) throws IOException {
+        block.clear();
+        while (block.hasRemaining() && channel.read(block, position + block.position()) != -1) {
+            // keep reading until the block is full or the file ends
+        }
+        block.flip();
+    }
+
+    public record Verification(List<List<File>> groups, int groupsCompared, int splitGroups, long bytesCompared,
+                               long nanos) {
+        public long bytesPerSecond() {
+            return nanos == 0 ? 0 : (long) (bytesCompared * 1_000_000_000.0 / nanos);
+        }
+    }
+
+    private record Member(File file, FileChannel channel) {
+    }
+
+    // One block per distinct variant of the current position plus the one being read, reused across positions
+    private static final class BlockBuffers {
+        private final int capacity;
+        private final List<ByteBuffer> buffers = new ArrayList<>();
+        private int used;
+
+        BlockBuffers(int capacity) {
+            this.capacity = capacity;
+        }
+
+        ByteBuffer get(int index) {
+            return buffers.get(index);
+        }
+
+        ByteBuffer acquire() {
+            if (used == buffers.size()) {
+                buffers.add(ByteBuffer.allocateDirect(capacity + ALIGNMENT).alignedSlice(ALIGNMENT).slice(0, capacity));
+            }
+            return buffers.get(used++);
+        }
+
+        // The last acquired buffer holds a block that is not kept
+        void giveBack() {
+            used--;
+        }
+
+        void release() {
+            used = 0;
+        }
+    }
+}
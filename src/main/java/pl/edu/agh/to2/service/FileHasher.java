@@ -5,4 +5,9 @@ import java.nio.file.Path;
 
 public interface FileHasher {
     String hash(Path path) throws IOException;
+
+    // Stored next to every hash, hashes of different algorithms are never compared
+    default String algorithm() {
+        return "SHA-256";
+    }
 }
@@ -5,17 +5,27 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Service;
 import pl.edu.agh.to2.model.ActionLog;
+import pl.edu.agh.to2.model.DirectoryStats;
 import pl.edu.agh.to2.model.File;
 import pl.edu.agh.to2.repository.ActionLogRepository;
-import pl.edu.agh.to2.repository.EditDistanceResult;
+import pl.edu.agh.to2.repository.BlockDedupStats;
+import pl.edu.agh.to2.repository.ExtensionStats;
 import pl.edu.agh.to2.repository.FileRepository;
 import pl.edu.agh.to2.repository.FileSizeStats;
+import pl.edu.agh.to2.repository.SharedChunks;
+import pl.edu.agh.to2.repository.ValueRange;
+import pl.edu.agh.to2.service.scan.DirectoryRollup;
+import pl.edu.agh.to2.service.scan.FileScanner;
+import pl.edu.agh.to2.service.scan.IndexWatcher;
+import pl.edu.agh.to2.service.scan.ScanSummary;
 import pl.edu.agh.to2.types.ActionType;
+import pl.edu.agh.to2.types.ScanMode;
 
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.nio.file.FileSystem;
+import java.nio.file.FileSystems;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.time.Clock;
@@ -33,98 +43,96 @@ public class FileService {
     private final FileRepository fileRepository;
     private final Clock clock;
     private final ActionLogRepository actionLogRepository;
-    private final FileHasher fileHasher;
+    private final FileScanner fileScanner;
+    private final IndexWatcher indexWatcher;
+    private final CandidateHasher candidateHasher;
+    private final HashConfirmation hashConfirmation;
+    private final DirectoryRollup directoryRollup;
+    private final NameSimilarity nameSimilarity;
+    private final NearDuplicates nearDuplicates;
+    private final ChunkIndex chunkIndex;
+    private final DuplicateVerifier duplicateVerifier;
+    // Paths are stored as strings, this is the file system they belong to
+    private volatile FileSystem indexedFileSystem = FileSystems.getDefault();
 
     public FileService(FileRepository fileRepository,
                        Clock clock,
                        ActionLogRepository actionLogRepository,
-                       FileHasher fileHasher) {
+                       FileScanner fileScanner,
+                       IndexWatcher indexWatcher,
+                       CandidateHasher candidateHasher,
+                       HashConfirmation hashConfirmation,
+                       DirectoryRollup directoryRollup,
+                       NameSimilarity nameSimilarity,
+                       NearDuplicates nearDuplicates,
+                       ChunkIndex chunkIndex,
+                       DuplicateVerifier duplicateVerifier) {
         this.fileRepository = fileRepository;
         this.clock = clock;
         this.actionLogRepository = actionLogRepository;
-        this.fileHasher = fileHasher;
+        this.fileScanner = fileScanner;
+        this.indexWatcher = indexWatcher;
+        this.candidateHasher = candidateHasher;
+        this.hashConfirmation = hashConfirmation;
+        this.directoryRollup = directoryRollup;
+        this.nameSimilarity = nameSimilarity;
+        this.nearDuplicates = nearDuplicates;
+        this.chunkIndex = chunkIndex;
+        this.duplicateVerifier = duplicateVerifier;
     }
 
-    @Transactional
-    public void loadFromPath(Path root, Pattern pattern) {
-        fileRepository.deleteAll();
-        fileRepository.flush();
-
-        List<Path> files = searchDirectory(root, pattern);
-        List<File> fileRecords = new ArrayList<>();
-        for (Path file : files) {
-            try {
-                fileRecords.add(new File(
-                        file.getFileName().toString(),
-                        file.toString(),
-                        Files.size(file),
-                        Files.getLastModifiedTime(file).toMillis(),
-                        tryToHash(file)
-                ));
-            } catch (IOException e) {
-                logger.error("Error loading file: {}", file, e);
-            }
-        }
-
-        fileRepository.saveAll(fileRecords);
-        logger.info("Files loaded from path: {}. Number of files: {}", root, fileRecords.size());
+    public ScanSummary loadFromPath(Path root, Pattern pattern) {
+        return loadFromPath(root, pattern, ScanMode.FULL);
     }
 
-    private List<Path> searchDirectory(Path path, Pattern pattern) {
-        List<Path> fileList = new LinkedList<>();
-        if (Files.notExists(path) || !Files.isDirectory(path)) {
-            logger.info("Invalid folder path provided.");
-            return fileList;
+    // Not transactional on purpose: the scanner commits its results in batches
+    public ScanSummary loadFromPath(Path root, Pattern pattern, ScanMode mode) {
+        indexedFileSystem = root.getFileSystem();
+        // The watcher must not write into the index while the scan replaces it
+        indexWatcher.pause();
+        ScanSummary summary;
+        try {
+            summary = fileScanner.scan(root, pattern, mode);
+        } catch (RuntimeException e) {
+            indexWatcher.resume();
+            throw e;
         }
-        search(fileList, path, pattern);
-        return fileList;
+        // Does nothing unless file-cleaner.watch.enabled is set
+        indexWatcher.watch(root, pattern);
+        return summary;
     }
 
-    private void search(List<Path> resultsList, Path dir, Pattern pattern) {
-        try (Stream<Path> files = Files.list(dir)) {
-            List<Path> filesList = files.toList();
-            for (Path file : filesList) {
-                handleFile(resultsList, pattern, file);
-            }
-        } catch (IOException ignored) {
-            // We ignore the exception because we don't want to interrupt the program's execution in case of errors while listing files in the directory
-        }
+    public List<File> findFilesInPath(Path directoryPath) {
+        return fileRepository.findByPathStartingWith(String.valueOf(directoryPath));
     }
 
-    private void handleFile(List<Path> resultsList, Pattern pattern, Path file) {
-        if (Files.isDirectory(file)) {
-            search(resultsList, file, pattern);
-        } else {
-            String fileName = file.getFileName().toString();
-            if (pattern == null || pattern.matcher(fileName).matches()) {
-                logger.info("File path: {}", file);
-                resultsList.add(file);
-            }
-        }
+    // Files in path order after afterPath ("" for the first page), skipping the first skip of them
+    public List<File> findFilesInPath(Path directoryPath, String afterPath, int skip, int limit) {
+        return fileRepository.findPageByPathStartingWith(String.valueOf(directoryPath), afterPath, skip, limit);
     }
 
-    private String tryToHash(Path path) {
-        try {
-            return fileHasher.hash(path);
-        } catch (IOException e) {
-            logger.error("Error hashing file: {}", path, e);
-            throw new RuntimeException("Error hashing file: " + path, e);
-        }
-    }
-
-    public List<File> findFilesInPath(Path directoryPath) {
-        return fileRepository.findByPathStartingWith(String.valueOf(directoryPath));
+    public long countFilesInPath(Path directoryPath) {
+        return fileRepository.countByPathStartingWith(String.valueOf(directoryPath));
     }
 
     public List<File> findLargestFilesIn(Path path, int n) {
         return fileRepository.findLargestFilesIn(String.valueOf(path), n);
     }
 
+    // Directories by the size of their whole subtree, read from the rollup instead of summing up the files
+    public List<DirectoryStats> findLargestDirectories(int n) {
+        return directoryRollup.findLargestSubtrees(n);
+    }
+
     public List<List<File>> findDuplicatedGroups() {
+        candidateHasher.hashCandidates(indexedFileSystem);
         List<File> duplicates = fileRepository.findDuplicates();
-        return new ArrayList<>(duplicates.stream()
-                .collect(Collectors.groupingBy(f -> f.getHash() + "_" + f.getSize()))
+        List<List<File>> groups = new ArrayList<>(duplicates.stream()
+                .collect(Collectors.groupingBy(f -> f.getHashAlgorithm() + "_" + f.getHash() + "_" + f.getSize()))
                 .values());
+        groups = hashConfirmation.confirm(groups, indexedFileSystem);
+        // Does nothing unless file-cleaner.verify.enabled is set
+        return duplicateVerifier.verify(groups, indexedFileSystem);
     }
 
     @Transactional
@@ -135,7 +143,9 @@ public class FileService {
             logger.error("Error deleting file: {}", path, e);
             return;
         }
+        Optional<File> file = fileRepository.findByPath(path.toString());
         fileRepository.deleteByPath(path.toString());
+        file.ifPresent(deleted -> directoryRollup.fileDeleted(deleted, path));
 
         logger.info("File deleted: {}", path);
 
@@ -213,37 +223,37 @@ public class FileService {
     }
 
     public List<List<File>> findVersions(int maxDistance) {
-        List<EditDistanceResult> similarFiles = fileRepository.findSimilarFileNames(maxDistance);
-        List<Set<File>> versionGroups = new ArrayList<>();
-
-        for (EditDistanceResult res : similarFiles) {
-            File first = res.first();
-            File second = res.second();
-
-            boolean addedToGroup = false;
-            for (Set<File> group : versionGroups) {
-                if (group.contains(first) || group.contains(second)) {
-                    group.add(first);
-                    group.add(second);
-                    addedToGroup = true;
-                    break;
-                }
-            }
+        return nameSimilarity.findVersionGroups(maxDistance);
+    }
 
-            if (!addedToGroup) {
-                Set<File> newGroup = new HashSet<>();
-                newGroup.add(first);
-                newGroup.add(second);
-                versionGroups.add(newGroup);
-            }
+    // Files with similar content, only those scanned with file-cleaner.similarity.enabled have a signature
+    public List<List<File>> findNearDuplicates() {
+        return nearDuplicates.findGroups();
+    }
+
+    // Empty unless file-cleaner.chunking.enabled is set, covers the files chunked since the last scan so far
+    public Optional<BlockDedupStats> getBlockDedupStats() {
+        if (!chunkIndex.isEnabled()) {
+            return Optional.empty();
         }
+        return Optional.of(chunkIndex.getBlockDedupStats());
+    }
 
-        return new ArrayList<>(versionGroups
+    // Pairs of large files by the bytes of content they share, most first
+    public List<SharedContent> findFilesSharingContent(int limit) {
+        if (!chunkIndex.isEnabled()) {
+            return List.of();
+        }
+        List<SharedChunks> pairs = chunkIndex.findSharedChunks(limit);
+        Map<Long, File> files = fileRepository.findAllById(pairs.stream()
+                        .flatMap(pair -> Stream.of(pair.firstId(), pair.secondId()))
+                        .distinct()
+                        .toList())
                 .stream()
-                .filter(group -> group.size() > 1)
-                .map(ArrayList::new)
-                .toList()
-        );
+                .collect(Collectors.toMap(File::getId, file -> file));
+        return pairs.stream()
+                .map(pair -> new SharedContent(files.get(pair.firstId()), files.get(pair.secondId()), pair.sharedBytes()))
+                .toList();
     }
 
     public Optional<FileSizeStats> getFileSizeStats() {
@@ -252,35 +262,42 @@ public class FileService {
     }
 
     public Optional<Histogram> getFileSizeHistogram(int bucketCount) {
-        List<Long> sizes = fileRepository.findAllSizes();
-        return calculateHistogram(bucketCount, sizes);
+        return calculateHistogram(bucketCount, fileRepository.findSizeRange(), fileRepository::findSizeBuckets);
     }
 
     public Optional<Histogram> getLastModifiedHistogram(int bucketCount) {
-        List<Long> lastModified = fileRepository.findAllLastModifiedInMilliseconds();
-        return calculateHistogram(bucketCount, lastModified);
+        return calculateHistogram(bucketCount, fileRepository.findLastModifiedRange(),
+                fileRepository::findLastModifiedBuckets);
     }
 
-    private Optional<Histogram> calculateHistogram(int bucketCount, List<Long> data) {
-        if (data.isEmpty()) {
+    // The range and the counts come from the database, only bucketCount numbers are read
+    private Optional<Histogram> calculateHistogram(int bucketCount, ValueRange range, BucketCounter counter) {
+        if (range.min() == null) {
             return Optional.empty();
         }
-        long min = data.stream().min(Long::compareTo).orElseThrow();
-        long max = data.stream().max(Long::compareTo).orElseThrow();
-        double bucketSize = (double) (max - min) / bucketCount;
-        List<Long> buckets = new ArrayList<>(Collections.nCopies(bucketCount, 0L));
-        for (Long value : data) {
-            int bucketIndex = (int) ((value - min) / bucketSize);
-            if (bucketIndex == bucketCount) {
-                bucketIndex--;
-            }
-            buckets.set(bucketIndex, buckets.get(bucketIndex) + 1);
+        long min = range.min();
+        long max = range.max();
+        long[] buckets;
+        if (min == max) {
+            buckets = new long[bucketCount];
+            buckets[0] = fileRepository.count();
+        } else {
+            buckets = counter.count(min, max, bucketCount);
         }
-        return Optional.of(new Histogram(min, max, buckets));
+        return Optional.of(new Histogram(min, max, Arrays.stream(buckets).boxed().toList()));
+    }
+
+    @FunctionalInterface
+    private interface BucketCounter {
+        long[] count(long min, long max, int bucketCount);
     }
 
     public Map<String, Long> getFileCountsByExtension() {
         return fileRepository.findFileCountsByExtension();
     }
+
+    public List<ExtensionStats> getExtensionStats() {
+        return fileRepository.findExtensionStats();
+    }
 }
 
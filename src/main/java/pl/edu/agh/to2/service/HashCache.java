@@ -0,0 +1,133 @@
+package pl.edu.agh.to2.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import pl.edu.agh.to2.model.HashCacheEntry;
+import pl.edu.agh.to2.repository.HashCacheRepository;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.Clock;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.LongAdder;
+
+// Hashes that outlive the index: entries are keyed by file identity, size and modification time instead of
+// the path, so a file that was renamed, moved or scanned again under a new root is not read a second time.
+// Small files are cheaper to hash than to look up and bypass the cache.
+@Component
+public class HashCache {
+    private static final Logger logger = LoggerFactory.getLogger(HashCache.class);
+    private static final int TOUCH_BATCH_SIZE = 1000;
+
+    private final HashCacheRepository hashCacheRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final Clock clock;
+    private final boolean enabled;
+    private final long maxEntries;
+    private final long minSize;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    // lastUsed of hit entries is updated in batches by flush()
+    private final Queue<Long> usedIds = new ConcurrentLinkedQueue<>();
+
+    public HashCache(HashCacheRepository hashCacheRepository,
+                     PlatformTransactionManager transactionManager,
+                     Clock clock,
+                     @Value("${file-cleaner.hash.cache.enabled:true}") boolean enabled,
+                     @Value("${file-cleaner.hash.cache.max-entries:1000000}") long maxEntries,
+                     @Value("${file-cleaner.hash.cache.min-size-kb:64}") long minSizeKb) {
+        this.hashCacheRepository = hashCacheRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.clock = clock;
+        this.enabled = enabled;
+        this.maxEntries = maxEntries;
+        this.minSize = minSizeKb * 1024;
+    }
+
+    public String hash(FileHasher fileHasher, Path path) throws IOException {
+        BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+        Object fileKey = attributes.fileKey();
+        return hash(fileHasher, path, fileKey == null ? null : fileKey.toString(),
+                attributes.size(), attributes.lastModifiedTime().toMillis());
+    }
+
+    public String hash(FileHasher fileHasher, Path path, String fileKey, long size, long lastModified) throws IOException {
+        if (!enabled || fileKey == null || size < minSize) {
+            return fileHasher.hash(path);
+        }
+
+        String algorithm = fileHasher.algorithm();
+        Optional<HashCacheEntry> cached = hashCacheRepository
+                .findByFileKeyAndSizeAndLastModifiedAndAlgorithm(fileKey, size, lastModified, algorithm);
+        if (cached.isPresent()) {
+            hits.increment();
+            usedIds.add(cached.get().getId());
+            return cached.get().getHash();
+        }
+
+        misses.increment();
+        String hash = fileHasher.hash(path);
+        HashCacheEntry entry = new HashCacheEntry(fileKey, size, lastModified, algorithm, hash, now());
+        try {
+            transactionTemplate.executeWithoutResult(status -> hashCacheRepository.save(entry));
+        } catch (DataIntegrityViolationException e) {
+            // Another link to the same file has been hashed in the meantime
+            logger.debug("Hash of {} is already cached", path);
+        }
+        return hash;
+    }
+
+    // Records the use of the entries hit since the last flush and evicts the least recently used ones above the cap
+    public void flush() {
+        if (!enabled) {
+            return;
+        }
+        long now = now();
+        List<Long> ids = new ArrayList<>(TOUCH_BATCH_SIZE);
+        Long id;
+        while ((id = usedIds.poll()) != null) {
+            ids.add(id);
+            if (ids.size() == TOUCH_BATCH_SIZE) {
+                touch(ids, now);
+                ids.clear();
+            }
+        }
+        touch(ids, now);
+
+        long excess = hashCacheRepository.count() - maxEntries;
+        if (excess > 0) {
+            int evicted = transactionTemplate.execute(status -> hashCacheRepository.deleteLeastRecentlyUsed(excess));
+            logger.info("Evicted {} hash cache entries", evicted);
+        }
+        logger.info("Hash cache: hits={}, misses={}", getHits(), getMisses());
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    private void touch(List<Long> ids, long now) {
+        if (!ids.isEmpty()) {
+            transactionTemplate.executeWithoutResult(status -> hashCacheRepository.touch(ids, now));
+        }
+    }
+
+    private long now() {
+        return clock.instant().toEpochMilli();
+    }
+}
@@ -0,0 +1,65 @@
+package pl.edu.agh.to2.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import pl.edu.agh.to2.model.File;
+
+import java.io.IOException;
+import java.nio.file.FileSystem;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+// Optional second opinion for duplicates found with a fast non-cryptographic hash: the members of every
+// final group are hashed with SHA-256 and groups are split where the digests differ.
+@Component
+public class HashConfirmation {
+    private static final Logger logger = LoggerFactory.getLogger(HashConfirmation.class);
+    private static final long MAP_THRESHOLD = 64L * 1024 * 1024;
+
+    private final FileHasher fileHasher;
+    private final FileHasher confirmingHasher = new ChannelFileHasher(MAP_THRESHOLD);
+    private final boolean enabled;
+
+    public HashConfirmation(FileHasher fileHasher,
+                            @Value("${file-cleaner.hash.confirm-with-sha256:false}") boolean enabled) {
+        this.fileHasher = fileHasher;
+        this.enabled = enabled;
+    }
+
+    public List<List<File>> confirm(List<List<File>> groups, FileSystem fileSystem) {
+        if (!enabled || confirmingHasher.algorithm().equals(fileHasher.algorithm())) {
+            return groups;
+        }
+
+        List<List<File>> confirmed = new ArrayList<>();
+        int rejected = 0;
+        for (List<File> group : groups) {
+            Map<String, List<File>> byDigest = new LinkedHashMap<>();
+            for (File file : group) {
+                try {
+                    String digest = confirmingHasher.hash(fileSystem.getPath(file.getPath()));
+                    byDigest.computeIfAbsent(digest, key -> new ArrayList<>()).add(file);
+                } catch (IOException e) {
+                    logger.error("Error hashing file: {}", file.getPath(), e);
+                }
+            }
+            for (List<File> files : byDigest.values()) {
+                if (files.size() > 1) {
+                    confirmed.add(files);
+                }
+            }
+            if (byDigest.size() > 1) {
+                rejected++;
+            }
+        }
+
+        if (rejected > 0) {
+            logger.warn("SHA-256 split {} duplicate groups found with {}", rejected, fileHasher.algorithm());
+        }
+        return confirmed;
+    }
+}
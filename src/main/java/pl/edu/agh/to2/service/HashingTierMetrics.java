@@ -0,0 +1,11 @@
+package pl.edu.agh.to2.service;
+
+public record HashingTierMetrics(
+        long sizeTierBytesSkipped,
+        long partialTierFiles,
+        long partialTierBytesRead,
+        long partialTierBytesSaved,
+        long fullTierFiles,
+        long fullTierBytesRead
+) {
+}
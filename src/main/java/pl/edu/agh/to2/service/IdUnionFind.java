@@ -0,0 +1,79 @@
+package pl.edu.agh.to2.service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+// Disjoint sets of file ids on primitive arrays. An id is mapped to its position in the sorted array of all ids
+// by binary search; union by size and path halving keep every operation close to constant time.
+final class IdUnionFind {
+    private final long[] ids;
+    private final int[] parent;
+    private final int[] size;
+
+    IdUnionFind(long[] sortedIds) {
+        this.ids = sortedIds;
+        this.parent = new int[sortedIds.length];
+        this.size = new int[sortedIds.length];
+        for (int i = 0; i < sortedIds.length; i++) {
+            parent[i] = i;
+            size[i] = 1;
+        }
+    }
+
+    void union(long firstId, long secondId) {
+        int first = find(indexOf(firstId));
+        int second = find(indexOf(secondId));
+        if (first == second) {
+            return;
+        }
+        if (size[first] < size[second]) {
+            int swap = first;
+            first = second;
+            second = swap;
+        }
+        parent[second] = first;
+        size[first] += size[second];
+    }
+
+    boolean connected(long firstId, long secondId) {
+        return find(indexOf(firstId)) == find(indexOf(secondId));
+    }
+
+    // Sets of more than one id, each sorted, ordered by their lowest id
+    List<long[]> groups() {
+        int[] groupOfRoot = new int[ids.length];
+        Arrays.fill(groupOfRoot, -1);
+        List<long[]> groups = new ArrayList<>();
+        int[] filled = new int[ids.length];
+        for (int i = 0; i < ids.length; i++) {
+            int root = find(i);
+            if (size[root] == 1) {
+                continue;
+            }
+            if (groupOfRoot[root] == -1) {
+                groupOfRoot[root] = groups.size();
+                groups.add(new long[size[root]]);
+            }
+            int group = groupOfRoot[root];
+            groups.get(group)[filled[group]++] = ids[i];
+        }
+        return groups;
+    }
+
+    private int indexOf(long id) {
+        int index = Arrays.binarySearch(ids, id);
+        if (index < 0) {
+            throw new IllegalArgumentException("Unknown file id: " + id);
+        }
+        return index;
+    }
+
+    private int find(int index) {
+        while (parent[index] != index) {
+            parent[index] = parent[parent[index]];
+            index = parent[index];
+        }
+        return index;
+    }
+}
@@ -0,0 +1,35 @@
+package pl.edu.agh.to2.service;
+
+// Edit distance over code points, as levenshtein() of fuzzystrmatch counts characters and not UTF-16 units
+final class Levenshtein {
+    private Levenshtein() {
+    }
+
+    static int[] codePoints(String s) {
+        return s.codePoints().toArray();
+    }
+
+    static int distance(int[] a, int[] b) {
+        if (a.length < b.length) {
+            int[] swap = a;
+            a = b;
+            b = swap;
+        }
+        int[] previous = new int[b.length + 1];
+        int[] current = new int[b.length + 1];
+        for (int j = 0; j <= b.length; j++) {
+            previous[j] = j;
+        }
+        for (int i = 1; i <= a.length; i++) {
+            current[0] = i;
+            for (int j = 1; j <= b.length; j++) {
+                int substitution = previous[j - 1] + (a[i - 1] == b[j - 1] ? 0 : 1);
+                current[j] = Math.min(substitution, Math.min(previous[j], current[j - 1]) + 1);
+            }
+            int[] swap = previous;
+            previous = current;
+            current = swap;
+        }
+        return previous[b.length];
+    }
+}
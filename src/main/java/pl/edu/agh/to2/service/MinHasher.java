@@ -0,0 +1,124 @@
+package pl.edu.agh.to2.service;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+// MinHash signature of the content of a file over its shingles, the 8 byte windows at every offset. The share
+// of positions on which two signatures agree estimates the Jaccard similarity of the shingle sets, so files edited
+// here and there still match. One permutation hashing keeps a single hash per shingle: its top bits pick one of
+// SIZE bins and each bin keeps the lowest value. Empty bins of short files take the value of the next non-empty
+// bin (rotation densification). Signatures are stored, changing the hash makes the stored ones incomparable.
+public final class MinHasher {
+    public static final int SIZE = 128;
+    public static final int SIGNATURE_BYTES = SIZE * Integer.BYTES;
+    private static final int BIN_BITS = Integer.numberOfTrailingZeros(SIZE);
+    private static final int SHINGLE_BYTES = Long.BYTES;
+    private static final int BUFFER_SIZE = 64 * 1024;
+    // Keeps a borrowed value apart from the same value borrowed from another distance
+    private static final int DENSIFICATION_STEP = 0x9E3779B9;
+
+    private MinHasher() {
+    }
+
+    // null for files shorter than a single shingle
+    public static byte[] signature(Path path) throws IOException {
+        int[] minimums = new int[SIZE];
+        boolean[] filled = new boolean[SIZE];
+        long window = 0;
+        long previous = 0;
+        long bytes = 0;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            ByteBuffer buffer = ByteBuffer.allocate((int) Math.min(BUFFER_SIZE, channel.size() + 1));
+            int read;
+            while ((read = channel.read(buffer)) != -1) {
+                byte[] array = buffer.array();
+                for (int i = 0; i < read; i++) {
+                    window = (window << 8) | (array[i] & 0xFF);
+                    // Runs of the same shingle (padding, zeroed blocks) can't lower any minimum again
+                    if (++bytes >= SHINGLE_BYTES && (window != previous || bytes == SHINGLE_BYTES)) {
+                        addShingle(minimums, filled, window);
+                        previous = window;
+                    }
+                }
+                buffer.clear();
+            }
+        }
+        if (bytes < SHINGLE_BYTES) {
+            return null;
+        }
+        densify(minimums, filled);
+        return toBytes(minimums);
+    }
+
+    // Estimated Jaccard similarity of the contents of two files
+    public static double similarity(byte[] signature, byte[] other) {
+        int equal = 0;
+        for (int i = 0; i < SIZE; i++) {
+            if (valueAt(signature, i) == valueAt(other, i)) {
+                equal++;
+            }
+        }
+        return (double) equal / SIZE;
+    }
+
+    // Hash of the values at [from, from + count), the key of a locality-sensitive hashing band
+    public static long bandKey(byte[] signature, int from, int count) {
+        long key = from;
+        for (int i = from; i < from + count; i++) {
+            key = mix(key * 31 + valueAt(signature, i));
+        }
+        return key;
+    }
+
+    static int valueAt(byte[] signature, int index) {
+        int offset = index * Integer.BYTES;
+        return (signature[offset] & 0xFF) << 24
+                | (signature[offset + 1] & 0xFF) << 16
+                | (signature[offset + 2] & 0xFF) << 8
+                | (signature[offset + 3] & 0xFF);
+    }
+
+    private static void addShingle(int[] minimums, boolean[] filled, long shingle) {
+        long hash = mix(shingle);
+        int bin = (int) (hash >>> (Long.SIZE - BIN_BITS));
+        int value = (int) hash;
+        if (!filled[bin] || value < minimums[bin]) {
+            minimums[bin] = value;
+            filled[bin] = true;
+        }
+    }
+
+    private static void densify(int[] minimums, boolean[] filled) {
+        for (int bin = 0; bin < SIZE; bin++) {
+            if (filled[bin]) {
+                continue;
+            }
+            int distance = 1;
+            while (!filled[(bin + distance) % SIZE]) {
+                distance++;
+            }
+            minimums[bin] = minimums[(bin + distance) % SIZE] + distance * DENSIFICATION_STEP;
+        }
+    }
+
+    private static byte[] toBytes(int[] values) {
+        ByteBuffer buffer = ByteBuffer.allocate(SIGNATURE_BYTES);
+        for (int value : values) {
+            buffer.putInt(value);
+        }
+        return buffer.array();
+    }
+
+    // Finalizer of MurmurHash3, spreads every input bit over the whole result
+    private static long mix(long value) {
+        value ^= value >>> 33;
+        value *= 0xFF51AFD7ED558CCDL;
+        value ^= value >>> 33;
+        value *= 0xC4CEB9FE1A85EC53L;
+        value ^= value >>> 33;
+        return value;
+    }
+}
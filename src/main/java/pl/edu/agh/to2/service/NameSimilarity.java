@@ -0,0 +1,212 @@
+package pl.edu.agh.to2.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import pl.edu.agh.to2.model.File;
+import pl.edu.agh.to2.repository.EditDistanceResult;
+import pl.edu.agh.to2.repository.FileName;
+import pl.edu.agh.to2.repository.FileRepository;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+// Files whose names are similar, without comparing every pair. Distinct names (or version keys) are put into
+// a BK-tree and each one only looks up its neighbours, files sharing a name are paired without any comparison.
+@Component
+public class NameSimilarity {
+    private static final Logger logger = LoggerFactory.getLogger(NameSimilarity.class);
+    // Bind parameters of a single IN list, PostgreSQL allows at most 32767
+    private static final int LOAD_BATCH_SIZE = 1000;
+
+    private final FileRepository fileRepository;
+    private final int maxBucketSize;
+
+    public NameSimilarity(FileRepository fileRepository,
+                          @Value("${file-cleaner.versions.max-key-bucket:100}") int maxBucketSize) {
+        this.fileRepository = fileRepository;
+        this.maxBucketSize = maxBucketSize;
+    }
+
+    // The same result as FileRepository.findSimilarFileNames: pairs ordered by distance and ids, first id lower
+    public List<EditDistanceResult> findSimilarFileNames(int maxDistance) {
+        if (maxDistance <= 0) {
+            return List.of();
+        }
+        NameIndex index = NameIndex.of(fileRepository.findAllNames());
+        List<Pair> pairs = new ArrayList<>();
+        forEachSimilarName(index.names(), index.names().size(), maxDistance, (name, other, distance) ->
+                addPairs(pairs, index.ids().get(name), index.ids().get(other), name == other, distance));
+        pairs.sort(Comparator.comparingInt(Pair::distance)
+                .thenComparingLong(Pair::first)
+                .thenComparingLong(Pair::second));
+
+        Map<Long, File> files = load(pairs.stream().flatMap(pair -> Stream.of(pair.first(), pair.second())).toList());
+        return pairs.stream()
+                .map(pair -> new EditDistanceResult(files.get(pair.first()), files.get(pair.second()), pair.distance()))
+                .toList();
+    }
+
+    // Versions: files whose names are closer than maxDistance, without comparing every pair. Files are put into
+    // buckets by their VersionKeys key and compared by name within their bucket, buckets whose keys are closer
+    // than maxDistance are compared with each other. A file alone in its bucket is also looked up by name among
+    // the files of the other buckets, a_fin.txt stays with a_final.txt although their keys (a_fin.txt, a.txt)
+    // are far apart. A key shared by too many files says little, such a bucket is only compared within itself.
+    // Groups are sorted by id and ordered by their lowest id.
+    public List<List<File>> findVersionGroups(int maxDistance) {
+        if (maxDistance <= 0) {
+            return List.of();
+        }
+        List<FileName> files = fileRepository.findAllNames();
+        Map<String, List<FileName>> buckets = new LinkedHashMap<>();
+        for (FileName file : files) {
+            buckets.computeIfAbsent(VersionKeys.keyOf(file.name()), key -> new ArrayList<>()).add(file);
+        }
+
+        IdUnionFind groups = new IdUnionFind(files.stream().mapToLong(FileName::id).toArray());
+        List<int[]> keys = new ArrayList<>();
+        List<NameIndex> keyNames = new ArrayList<>();
+        // Files of the small buckets, the ones alone in their bucket first
+        List<FileName> lone = new ArrayList<>();
+        List<FileName> shared = new ArrayList<>();
+        long comparisons = 0;
+        int largeBuckets = 0;
+        for (Map.Entry<String, List<FileName>> bucket : buckets.entrySet()) {
+            List<FileName> members = bucket.getValue();
+            NameIndex index = NameIndex.of(members);
+            comparisons += joinSimilarNames(groups, index, maxDistance);
+            if (members.size() <= maxBucketSize) {
+                keys.add(Levenshtein.codePoints(bucket.getKey()));
+                keyNames.add(index);
+                (members.size() == 1 ? lone : shared).addAll(members);
+            } else {
+                largeBuckets++;
+            }
+        }
+
+        List<int[]> closeKeys = new ArrayList<>();
+        comparisons += forEachSimilarName(keys, keys.size(), maxDistance, (key, other, distance) -> {
+            if (key != other) {
+                closeKeys.add(new int[]{key, other});
+            }
+        });
+        for (int[] pair : closeKeys) {
+            comparisons += joinSimilarNames(groups, keyNames.get(pair[0]), keyNames.get(pair[1]), maxDistance);
+        }
+        // A lone file has a name of its own, so the lone names are the first distinct names of the index
+        NameIndex index = NameIndex.of(Stream.concat(lone.stream(), shared.stream()).toList());
+        comparisons += forEachSimilarName(index.names(), lone.size(), maxDistance, (name, other, distance) ->
+                groups.union(index.ids().get(name)[0], index.ids().get(other)[0]));
+
+        long distinctNames = files.stream().map(FileName::name).distinct().count();
+        logger.info("Version search: {} files, {} distinct names, {} version keys ({} buckets over {} files " +
+                        "compared only within themselves, {} pairs of close keys), {} files alone in their bucket " +
+                        "looked up by name, {} edit distances computed (comparing every pair of names takes {})",
+                files.size(), distinctNames, buckets.size(), largeBuckets, maxBucketSize, closeKeys.size(),
+                lone.size(), comparisons, distinctNames * (distinctNames - 1) / 2);
+
+        List<long[]> idGroups = groups.groups();
+        Map<Long, File> loaded = load(idGroups.stream().flatMap(ids -> Arrays.stream(ids).boxed()).toList());
+        return idGroups.stream()
+                .map(ids -> Arrays.stream(ids).mapToObj(loaded::get).toList())
+                .toList();
+    }
+
+    // Joins the files of a bucket that share a name or whose names are closer than maxDistance.
+    // Returns the number of edit distances computed.
+    private static long joinSimilarNames(IdUnionFind groups, NameIndex bucket, int maxDistance) {
+        for (long[] ids : bucket.ids()) {
+            for (long id : ids) {
+                groups.union(ids[0], id);
+            }
+        }
+        if (bucket.names().size() < 2) {
+            return 0;
+        }
+        return forEachSimilarName(bucket.names(), bucket.names().size(), maxDistance, (name, other, distance) ->
+                groups.union(bucket.ids().get(name)[0], bucket.ids().get(other)[0]));
+    }
+
+    // Joins the files of two small buckets whose names are closer than maxDistance, every pair is compared
+    private static long joinSimilarNames(IdUnionFind groups, NameIndex bucket, NameIndex other, int maxDistance) {
+        for (int a = 0; a < bucket.names().size(); a++) {
+            for (int b = 0; b < other.names().size(); b++) {
+                if (Levenshtein.distance(bucket.names().get(a), other.names().get(b)) < maxDistance) {
+                    groups.union(bucket.ids().get(a)[0], other.ids().get(b)[0]);
+                }
+            }
+        }
+        return (long) bucket.names().size() * other.names().size();
+    }
+
+    // Every pair of similar distinct names once, from the lower index, and every name with itself, where at
+    // least one of the two is among the first searched names; the others are only found, never looked up.
+    // Returns the number of edit distances computed.
+    private static long forEachSimilarName(List<int[]> names, int searched, int maxDistance,
+                                           SimilarNames similarNames) {
+        BkTree tree = new BkTree();
+        for (int i = 0; i < names.size(); i++) {
+            tree.add(names.get(i), i);
+        }
+        for (int i = 0; i < searched; i++) {
+            int name = i;
+            tree.search(names.get(i), maxDistance - 1, (other, distance) -> {
+                if (other >= name || other >= searched) {
+                    similarNames.found(Math.min(name, other), Math.max(name, other), distance);
+                }
+            });
+        }
+        return tree.getComparisons();
+    }
+
+    private static void addPairs(List<Pair> pairs, long[] ids, long[] otherIds, boolean sameName, int distance) {
+        for (int a = 0; a < ids.length; a++) {
+            for (int b = sameName ? a + 1 : 0; b < otherIds.length; b++) {
+                pairs.add(new Pair(Math.min(ids[a], otherIds[b]), Math.max(ids[a], otherIds[b]), distance));
+            }
+        }
+    }
+
+    private Map<Long, File> load(Collection<Long> ids) {
+        List<Long> distinct = ids.stream().distinct().toList();
+        Map<Long, File> files = new HashMap<>();
+        for (int i = 0; i < distinct.size(); i += LOAD_BATCH_SIZE) {
+            fileRepository.findAllById(distinct.subList(i, Math.min(distinct.size(), i + LOAD_BATCH_SIZE)))
+                    .forEach(file -> files.put(file.getId(), file));
+        }
+        return files;
+    }
+
+    @FunctionalInterface
+    private interface SimilarNames {
+        void found(int name, int other, int distance);
+    }
+
+    private record Pair(long first, long second, int distance) {
+    }
+
+    // Distinct names as code points with the ids of their files, by the lowest id
+    private record NameIndex(List<int[]> names, List<long[]> ids) {
+        static NameIndex of(List<FileName> files) {
+            Map<String, List<Long>> idsByName = new LinkedHashMap<>();
+            for (FileName file : files) {
+                idsByName.computeIfAbsent(file.name(), name -> new ArrayList<>()).add(file.id());
+            }
+            List<int[]> names = new ArrayList<>(idsByName.size());
+            List<long[]> ids = new ArrayList<>(idsByName.size());
+            idsByName.forEach((name, nameIds) -> {
+                names.add(Levenshtein.codePoints(name));
+                ids.add(nameIds.stream().mapToLong(Long::longValue).toArray());
+            });
+            return new NameIndex(names, ids);
+        }
+    }
+}
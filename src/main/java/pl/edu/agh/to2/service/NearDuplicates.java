@@ -0,0 +1,124 @@
+package pl.edu.agh.to2.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import pl.edu.agh.to2.model.File;
+import pl.edu.agh.to2.repository.FileMinHash;
+import pl.edu.agh.to2.repository.FileRepository;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Files with similar content: the scanner stores a MinHash signature of every file up to max-size-mb, the search
+// splits the signatures into bands (locality-sensitive hashing) and only compares files that agree on a whole
+// band with the first file seen in that band. Similar files are grouped transitively, like versions.
+@Component
+public class NearDuplicates {
+    private static final Logger logger = LoggerFactory.getLogger(NearDuplicates.class);
+    // Bind parameters of a single IN list, PostgreSQL allows at most 32767
+    private static final int LOAD_BATCH_SIZE = 1000;
+    // Probability that files exactly at the threshold become candidates in at least one band
+    private static final double MIN_RECALL = 0.95;
+
+    private final FileRepository fileRepository;
+    private final boolean enabled;
+    private final long maxSize;
+    private final double threshold;
+    private final int rowsPerBand;
+
+    public NearDuplicates(FileRepository fileRepository,
+                          @Value("${file-cleaner.similarity.enabled:false}") boolean enabled,
+                          @Value("${file-cleaner.similarity.max-size-mb:16}") long maxSizeMb,
+                          @Value("${file-cleaner.similarity.threshold:0.8}") double threshold) {
+        this.fileRepository = fileRepository;
+        this.enabled = enabled;
+        this.maxSize = maxSizeMb * 1024 * 1024;
+        this.threshold = threshold;
+        this.rowsPerBand = rowsPerBand(threshold);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    // Whether files of this size get a signature
+    public boolean covers(long size) {
+        return enabled && size <= maxSize;
+    }
+
+    // Called by the scanner next to the hash, null when disabled or the file is too large or unreadable
+    public byte[] sketch(Path path, long size) {
+        if (!covers(size)) {
+            return null;
+        }
+        try {
+            return MinHasher.signature(path);
+        } catch (IOException e) {
+            logger.error("Error computing the signature of file: {}", path, e);
+            return null;
+        }
+    }
+
+    // Groups of files whose estimated Jaccard similarity is at least the threshold, sorted by id and
+    // ordered by their lowest id
+    public List<List<File>> findGroups() {
+        List<FileMinHash> sketches = fileRepository.findAllMinHashes();
+        IdUnionFind groups = new IdUnionFind(sketches.stream().mapToLong(FileMinHash::id).toArray());
+        int bands = MinHasher.SIZE / rowsPerBand;
+        long candidates = 0;
+        long similar = 0;
+        for (int band = 0; band < bands; band++) {
+            Map<Long, FileMinHash> firstInBucket = new HashMap<>(sketches.size() * 2);
+            for (FileMinHash sketch : sketches) {
+                long key = MinHasher.bandKey(sketch.minHash(), band * rowsPerBand, rowsPerBand);
+                FileMinHash first = firstInBucket.putIfAbsent(key, sketch);
+                if (first == null || groups.connected(first.id(), sketch.id())) {
+                    continue;
+                }
+                candidates++;
+                if (MinHasher.similarity(first.minHash(), sketch.minHash()) >= threshold) {
+                    groups.union(first.id(), sketch.id());
+                    similar++;
+                }
+            }
+        }
+
+        long n = sketches.size();
+        logger.info("Near-duplicate search: {} files with a signature, {} bands of {} rows, {} candidate pairs " +
+                        "compared, {} above {} (comparing every pair takes {})",
+                n, bands, rowsPerBand, candidates, similar, threshold, n * (n - 1) / 2);
+
+        List<long[]> idGroups = groups.groups();
+        Map<Long, File> loaded = load(idGroups.stream().flatMap(ids -> Arrays.stream(ids).boxed()).toList());
+        return idGroups.stream()
+                .map(ids -> Arrays.stream(ids).mapToObj(loaded::get).toList())
+                .toList();
+    }
+
+    // The most rows per band (fewer false candidates) that still makes files at the threshold
+    // candidates with probability MIN_RECALL: 1 - (1 - t^rows)^bands
+    static int rowsPerBand(double threshold) {
+        for (int rows = MinHasher.SIZE; rows > 1; rows /= 2) {
+            int bands = MinHasher.SIZE / rows;
+            if (1 - Math.pow(1 - Math.pow(threshold, rows), bands) >= MIN_RECALL) {
+                return rows;
+            }
+        }
+        return 1;
+    }
+
+    private Map<Long, File> load(List<Long> ids) {
+        Map<Long, File> files = new HashMap<>();
+        for (int i = 0; i < ids.size(); i += LOAD_BATCH_SIZE) {
+            fileRepository.findAllById(ids.subList(i, Math.min(ids.size(), i + LOAD_BATCH_SIZE)))
+                    .forEach(file -> files.put(file.getId(), file));
+        }
+        return files;
+    }
+}
@@ -0,0 +1,66 @@
+package pl.edu.agh.to2.service;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.concurrent.atomic.LongAdder;
+
+// Hashes the size together with the first and the last blockSize bytes of a file.
+// Files with different partial hashes can't be equal, files with equal ones still need a full hash.
+public class PartialFileHasher implements FileHasher {
+    private final int blockSize;
+    private final LongAdder bytesRead = new LongAdder();
+
+    public PartialFileHasher(int blockSize) {
+        this.blockSize = blockSize;
+    }
+
+    @Override
+    public String hash(Path path) throws IOException {
+        MessageDigest digest = newDigest();
+        try (SeekableByteChannel channel = Files.newByteChannel(path)) {
+            long size = channel.size();
+            digest.update(ByteBuffer.allocate(Long.BYTES).putLong(size).flip());
+
+            ByteBuffer buffer = ByteBuffer.allocate(blockSize);
+            readBlock(channel, 0, buffer);
+            digest.update(buffer);
+            if (size > blockSize) {
+                buffer.clear();
+                readBlock(channel, Math.max(blockSize, size - blockSize), buffer);
+                digest.update(buffer);
+            }
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    public int getBlockSize() {
+        return blockSize;
+    }
+
+    public long getBytesRead() {
+        return bytesRead.sum();
+    }
+
+    private void readBlock(SeekableByteChannel channel, long position, ByteBuffer buffer) throws IOException {
+        channel.position(position);
+        while (buffer.hasRemaining() && channel.read(buffer) != -1) {
+            // keep reading until the block is full or the file ends
+        }
+        buffer.flip();
+        bytesRead.add(buffer.remaining());
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException("SHA-256 algorithm not available", e);
+        }
+    }
+}
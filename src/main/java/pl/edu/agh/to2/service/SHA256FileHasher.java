@@ -1,7 +1,5 @@
 package pl.edu.agh.to2.service;
 
-import org.springframework.stereotype.Component;
-
 import java.io.IOException;
 import java.io.InputStream;
 import java.nio.file.Files;
@@ -10,7 +8,6 @@ import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.util.HexFormat;
 
-@Component
 public class SHA256FileHasher implements FileHasher {
     @Override
     public String hash(Path path) throws IOException {
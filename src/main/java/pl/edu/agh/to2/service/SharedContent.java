@@ -0,0 +1,7 @@
+package pl.edu.agh.to2.service;
+
+import pl.edu.agh.to2.model.File;
+
+// Bytes of the chunks two files have in common, see ChunkIndex
+public record SharedContent(File first, File second, long sharedBytes) {
+}
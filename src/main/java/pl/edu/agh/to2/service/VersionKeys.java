@@ -0,0 +1,51 @@
+package pl.edu.agh.to2.service;
+
+import pl.edu.agh.to2.model.File;
+
+import java.util.List;
+import java.util.Locale;
+import java.util.regex.Pattern;
+
+// Reduces a file name to what its versions have in common: the stem without copy markers ("(1)", " - Copy"),
+// versions ("_v2", " version 3"), dates ("-2024-03-01") and words like "final", in lower case, with the extension.
+// report_v2.docx, report (1).docx and Report-2024-03-01.docx all become report.docx. A bare trailing number is
+// kept, IMG_0001.jpg and invoice_1234.pdf are numbered files, not versions.
+final class VersionKeys {
+    private static final List<Pattern> SUFFIXES = List.of(
+            Pattern.compile("[\\s._-]*[(\\[]\\d+[)\\]]$"),
+            Pattern.compile("[\\s._-]+(copy|kopia)(\\s*\\d+)?$"),
+            Pattern.compile("[\\s._-]+v(er(sion)?)?[\\s._-]?\\d+([._]\\d+)*$"),
+            Pattern.compile("[\\s._-]*\\d{4}[-_.]?\\d{2}[-_.]?\\d{2}([\\sT_-]?\\d{2}[-_.:]?\\d{2}([-_.:]?\\d{2})?)?$"),
+            Pattern.compile("[\\s._-]+(final|draft|old|new|backup|bak|orig|original|edited)$")
+    );
+
+    private VersionKeys() {
+    }
+
+    static String keyOf(String name) {
+        String extension = File.extensionOf(name).toLowerCase(Locale.ROOT);
+        String stem = name.toLowerCase(Locale.ROOT);
+        if (!extension.isEmpty() || name.endsWith(".")) {
+            stem = stem.substring(0, stem.length() - extension.length() - 1);
+        }
+
+        String key = stem;
+        boolean stripped = true;
+        while (stripped && !key.isEmpty()) {
+            stripped = false;
+            for (Pattern suffix : SUFFIXES) {
+                String shorter = suffix.matcher(key).replaceFirst("");
+                if (shorter.length() < key.length()) {
+                    key = shorter;
+                    stripped = true;
+                    break;
+                }
+            }
+        }
+        // A name made of nothing but a date or a copy marker is not a version of every other such name
+        if (key.isBlank()) {
+            key = stem;
+        }
+        return extension.isEmpty() ? key : key + "." + extension;
+    }
+}
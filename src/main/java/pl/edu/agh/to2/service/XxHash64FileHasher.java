@@ -0,0 +1,130 @@
+package pl.edu.agh.to2.service;
+
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+// XXH64 with seed 0, a non-cryptographic hash that digests several GB/s per core. Good enough to find
+// duplicates among trusted files, not to tell apart files crafted to collide.
+public class XxHash64FileHasher implements FileHasher {
+    public static final String ALGORITHM = "XXH64";
+    private static final int BUFFER_SIZE = 1024 * 1024;
+
+    @Override
+    public String hash(Path path) throws IOException {
+        XxHash64 hash = new XxHash64();
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            ByteBuffer buffer = ByteBuffer.allocate((int) Math.min(BUFFER_SIZE, channel.size() + 1));
+            int read;
+            while ((read = channel.read(buffer)) != -1) {
+                hash.update(buffer.array(), 0, read);
+                buffer.clear();
+            }
+        }
+        return String.format("%016x", hash.digest());
+    }
+
+    @Override
+    public String algorithm() {
+        return ALGORITHM;
+    }
+
+    static final class XxHash64 {
+        private static final long P1 = 0x9E3779B185EBCA87L;
+        private static final long P2 = 0xC2B2AE3D27D4EB4FL;
+        private static final long P3 = 0x165667B19E3779F9L;
+        private static final long P4 = 0x85EBCA77C2B2AE63L;
+        private static final long P5 = 0x27D4EB2F165667C5L;
+        private static final VarHandle LONG = MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+        private static final VarHandle INT = MethodHandles.byteArrayViewVarHandle(int[].class, ByteOrder.LITTLE_ENDIAN);
+
+        private long v1 = P1 + P2;
+        private long v2 = P2;
+        private long v3 = 0;
+        private long v4 = -P1;
+        private long length;
+        // Input not consumed yet because it doesn't fill a whole 32 byte stripe
+        private final byte[] pending = new byte[32];
+        private int pendingLength;
+
+        void update(byte[] input, int offset, int count) {
+            length += count;
+            int end = offset + count;
+            if (pendingLength > 0) {
+                int toCopy = Math.min(32 - pendingLength, count);
+                System.arraycopy(input, offset, pending, pendingLength, toCopy);
+                pendingLength += toCopy;
+                offset += toCopy;
+                if (pendingLength < 32) {
+                    return;
+                }
+                consumeStripe(pending, 0);
+                pendingLength = 0;
+            }
+            for (; offset <= end - 32; offset += 32) {
+                consumeStripe(input, offset);
+            }
+            pendingLength = end - offset;
+            System.arraycopy(input, offset, pending, 0, pendingLength);
+        }
+
+        long digest() {
+            long h;
+            if (length >= 32) {
+                h = Long.rotateLeft(v1, 1) + Long.rotateLeft(v2, 7) + Long.rotateLeft(v3, 12) + Long.rotateLeft(v4, 18);
+                h = mergeRound(h, v1);
+                h = mergeRound(h, v2);
+                h = mergeRound(h, v3);
+                h = mergeRound(h, v4);
+            } else {
+                h = P5;
+            }
+            h += length;
+
+            int offset = 0;
+            for (; offset + 8 <= pendingLength; offset += 8) {
+                h ^= round(0, (long) LONG.get(pending, offset));
+                h = Long.rotateLeft(h, 27) * P1 + P4;
+            }
+            if (offset + 4 <= pendingLength) {
+                h ^= ((int) INT.get(pending, offset) & 0xFFFFFFFFL) * P1;
+                h = Long.rotateLeft(h, 23) * P2 + P3;
+                offset += 4;
+            }
+            for (; offset < pendingLength; offset++) {
+                h ^= (pending[offset] & 0xFFL) * P5;
+                h = Long.rotateLeft(h, 11) * P1;
+            }
+
+            h ^= h >>> 33;
+            h *= P2;
+            h ^= h >>> 29;
+            h *= P3;
+            h ^= h >>> 32;
+            return h;
+        }
+
+        private void consumeStripe(byte[] input, int offset) {
+            v1 = round(v1, (long) LONG.get(input, offset));
+            v2 = round(v2, (long) LONG.get(input, offset + 8));
+            v3 = round(v3, (long) LONG.get(input, offset + 16));
+            v4 = round(v4, (long) LONG.get(input, offset + 24));
+        }
+
+        private static long round(long accumulator, long input) {
+            accumulator += input * P2;
+            accumulator = Long.rotateLeft(accumulator, 31);
+            return accumulator * P1;
+        }
+
+        private static long mergeRound(long accumulator, long value) {
+            accumulator ^= round(0, value);
+            return accumulator * P1 + P4;
+        }
+    }
+}
@@ -0,0 +1,260 @@
+package pl.edu.agh.to2.service.scan;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import pl.edu.agh.to2.model.DirectoryStats;
+import pl.edu.agh.to2.model.File;
+import pl.edu.agh.to2.repository.DirectoryStatsRepository;
+import pl.edu.agh.to2.repository.DirectoryTotals;
+import pl.edu.agh.to2.repository.FileRepository;
+
+import java.nio.file.FileSystem;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+// Keeps DirectoryStats in line with the file table. Full scans rebuild the rollup of their generation from one
+// grouped query (a row per directory, so the subtree totals are summed up in memory). Incremental scans, watcher
+// batches and single deletes adjust the rows of the directories they touched and of their ancestors in place.
+@Component
+public class DirectoryRollup {
+    private static final Logger logger = LoggerFactory.getLogger(DirectoryRollup.class);
+    // Above this many changed rows one grouped query is cheaper than looking up the copies of every changed file
+    private static final int MAX_CHANGED_FILES = 10_000;
+    // Bind parameters of a single IN list, PostgreSQL allows at most 32767
+    private static final int LOAD_BATCH_SIZE = 1000;
+
+    private final DirectoryStatsRepository directoryStatsRepository;
+    private final FileRepository fileRepository;
+    private final ScanGenerations scanGenerations;
+    private final TransactionTemplate transactionTemplate;
+    private final int batchSize;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    public DirectoryRollup(DirectoryStatsRepository directoryStatsRepository,
+                           FileRepository fileRepository,
+                           ScanGenerations scanGenerations,
+                           PlatformTransactionManager transactionManager,
+                           @Value("${file-cleaner.scan.batch-size:500}") int batchSize) {
+        this.directoryStatsRepository = directoryStatsRepository;
+        this.fileRepository = fileRepository;
+        this.scanGenerations = scanGenerations;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.batchSize = batchSize;
+    }
+
+    // Paths are split with the file system they were scanned from. A single transaction, readers see
+    // either the old rollup or the new one.
+    public void rebuild(long generation, FileSystem fileSystem) {
+        transactionTemplate.executeWithoutResult(status -> {
+            Map<String, DirectoryStats> stats = new HashMap<>();
+            for (DirectoryTotals totals : directoryStatsRepository.findDirectoryTotals(generation)) {
+                stats.computeIfAbsent(totals.directory(), path -> new DirectoryStats(generation, path))
+                        .addFiles(totals.fileCount(), totals.bytes(), totals.maxLastModified(), totals.duplicateBytes());
+                for (String ancestor : ancestorsOf(fileSystem.getPath(totals.directory()))) {
+                    stats.computeIfAbsent(ancestor, path -> new DirectoryStats(generation, path))
+                            .addSubtreeFiles(totals.fileCount(), totals.bytes(), totals.maxLastModified(),
+                                    totals.duplicateBytes());
+                }
+            }
+
+            directoryStatsRepository.deleteByGeneration(generation);
+            List<DirectoryStats> batch = new ArrayList<>(batchSize);
+            for (DirectoryStats directory : stats.values()) {
+                batch.add(directory);
+                if (batch.size() == batchSize) {
+                    save(batch);
+                }
+            }
+            save(batch);
+            logger.info("Rolled up {} directories of scan generation {}", stats.size(), generation);
+        });
+    }
+
+    RollupChanges newChanges() {
+        return new RollupChanges(MAX_CHANGED_FILES);
+    }
+
+    // Applies the rows an incremental scan changed, after they have been written. Whether a file counts as a
+    // duplicate depends on the size of its group before and after, so every touched group is looked up once.
+    // The newest modification time only grows, like in fileDeleted.
+    void apply(long generation, RollupChanges changes, FileSystem fileSystem) {
+        if (changes.isEmpty()) {
+            return;
+        }
+        if (changes.isOverflowed()) {
+            rebuild(generation, fileSystem);
+            return;
+        }
+        transactionTemplate.executeWithoutResult(status -> {
+            Map<String, DirectoryStats> deltas = new HashMap<>();
+            for (RollupChanges.FileState file : changes.getRemoved()) {
+                delta(deltas, generation, file, fileSystem).addFiles(-1, -file.size(), 0, 0);
+            }
+            for (RollupChanges.FileState file : changes.getAdded()) {
+                delta(deltas, generation, file, fileSystem).addFiles(1, file.size(), file.lastModified(), 0);
+            }
+            applyDuplicateChanges(deltas, generation, changes, fileSystem);
+            applyDeltas(deltas, generation, fileSystem);
+        });
+    }
+
+    // Has to run in the transaction that deleted the file. The newest modification time is left as it was,
+    // it stays an upper bound until the next scan. Directories left without files are removed like in applyDeltas.
+    public void fileDeleted(File file, Path path) {
+        Path directory = path.getParent();
+        if (directory == null) {
+            return;
+        }
+        List<File> copies = file.getHash() == null ? List.of()
+                : fileRepository.findCopies(file.getSize(), file.getHash(), file.getHashAlgorithm());
+        subtract(file.getGeneration(), directory, 1, file.getSize(), copies.isEmpty() ? 0 : file.getSize());
+        if (copies.size() == 1) {
+            // The last copy is no longer a duplicate
+            File copy = copies.get(0);
+            Path copyDirectory = path.getFileSystem().getPath(copy.getPath()).getParent();
+            if (copyDirectory != null) {
+                subtract(copy.getGeneration(), copyDirectory, 0, 0, copy.getSize());
+            }
+        }
+    }
+
+    public List<DirectoryStats> findLargestSubtrees(int n) {
+        return directoryStatsRepository.findLargestSubtrees(scanGenerations.activeGeneration(), n);
+    }
+
+    private void applyDuplicateChanges(Map<String, DirectoryStats> deltas, long generation, RollupChanges changes,
+                                       FileSystem fileSystem) {
+        Map<GroupKey, List<RollupChanges.FileState>> leaving = groupByContent(changes.getRemoved());
+        Map<GroupKey, List<RollupChanges.FileState>> joining = groupByContent(changes.getAdded());
+        Set<GroupKey> groups = new HashSet<>(leaving.keySet());
+        groups.addAll(joining.keySet());
+
+        for (GroupKey group : groups) {
+            List<RollupChanges.FileState> left = leaving.getOrDefault(group, List.of());
+            List<RollupChanges.FileState> joined = joining.getOrDefault(group, List.of());
+            List<File> members = fileRepository.findCopies(group.size(), group.hash(), group.algorithm());
+            boolean wasDuplicate = members.size() - joined.size() + left.size() > 1;
+            boolean isDuplicate = members.size() > 1;
+            if (wasDuplicate) {
+                left.forEach(file -> delta(deltas, generation, file, fileSystem).addFiles(0, 0, 0, -file.size()));
+            }
+            if (isDuplicate) {
+                joined.forEach(file -> delta(deltas, generation, file, fileSystem).addFiles(0, 0, 0, file.size()));
+            }
+            if (wasDuplicate != isDuplicate) {
+                // A group turns into duplicates or stops being one when it grows from or shrinks to a single file,
+                // that file kept its row
+                Set<String> joinedPaths = new HashSet<>();
+                joined.forEach(file -> joinedPaths.add(file.path()));
+                members.stream()
+                        .filter(member -> !joinedPaths.contains(member.getPath()))
+                        .forEach(member -> delta(deltas, generation, RollupChanges.FileState.of(member), fileSystem)
+                                .addFiles(0, 0, 0, isDuplicate ? member.getSize() : -member.getSize()));
+            }
+        }
+    }
+
+    // Adds the deltas of the directories to their rows and to the subtree totals of their ancestors.
+    // Directories left without files are removed, a rebuild would not have a row for them either.
+    private void applyDeltas(Map<String, DirectoryStats> deltas, long generation, FileSystem fileSystem) {
+        Map<String, DirectoryStats> subtreeDeltas = new HashMap<>();
+        for (DirectoryStats delta : deltas.values()) {
+            for (String ancestor : ancestorsOf(fileSystem.getPath(delta.getPath()))) {
+                subtreeDeltas.computeIfAbsent(ancestor, path -> new DirectoryStats(generation, path))
+                        .addSubtreeFiles(delta.getFileCount(), delta.getTotalBytes(), delta.getMaxLastModified(),
+                                delta.getDuplicateBytes());
+            }
+        }
+
+        Set<String> paths = new HashSet<>(deltas.keySet());
+        paths.addAll(subtreeDeltas.keySet());
+        Map<String, DirectoryStats> rows = new HashMap<>();
+        List<String> pathList = new ArrayList<>(paths);
+        for (int i = 0; i < pathList.size(); i += LOAD_BATCH_SIZE) {
+            directoryStatsRepository.findByGenerationAndPathIn(generation,
+                            pathList.subList(i, Math.min(pathList.size(), i + LOAD_BATCH_SIZE)))
+                    .forEach(row -> rows.put(row.getPath(), row));
+        }
+
+        List<DirectoryStats> changed = new ArrayList<>();
+        List<DirectoryStats> empty = new ArrayList<>();
+        for (String path : paths) {
+            DirectoryStats row = rows.computeIfAbsent(path, key -> new DirectoryStats(generation, key));
+            DirectoryStats own = deltas.get(path);
+            if (own != null) {
+                row.addFiles(own.getFileCount(), own.getTotalBytes(), own.getMaxLastModified(),
+                        own.getDuplicateBytes());
+            }
+            DirectoryStats subtree = subtreeDeltas.get(path);
+            if (subtree != null) {
+                row.addSubtreeFiles(subtree.getSubtreeFileCount(), subtree.getSubtreeBytes(),
+                        subtree.getSubtreeMaxLastModified(), subtree.getSubtreeDuplicateBytes());
+            }
+            (row.getSubtreeFileCount() > 0 ? changed : empty).add(row);
+        }
+        directoryStatsRepository.saveAll(changed);
+        directoryStatsRepository.deleteAll(empty.stream().filter(row -> row.getId() != 0).toList());
+        logger.info("Updated the rollup of {} directories of scan generation {}", paths.size(), generation);
+    }
+
+    // The delta of the directory of the file, top-level files belong to "" like in the grouped query
+    private static DirectoryStats delta(Map<String, DirectoryStats> deltas, long generation,
+                                        RollupChanges.FileState file, FileSystem fileSystem) {
+        Path directory = fileSystem.getPath(file.path()).getParent();
+        String path = directory == null ? "" : directory.toString();
+        return deltas.computeIfAbsent(path, key -> new DirectoryStats(generation, key));
+    }
+
+    private static Map<GroupKey, List<RollupChanges.FileState>> groupByContent(List<RollupChanges.FileState> files) {
+        Map<GroupKey, List<RollupChanges.FileState>> groups = new HashMap<>();
+        for (RollupChanges.FileState file : files) {
+            if (file.hash() != null) {
+                groups.computeIfAbsent(new GroupKey(file.size(), file.hash(), file.hashAlgorithm()),
+                        key -> new ArrayList<>()).add(file);
+            }
+        }
+        return groups;
+    }
+
+    private void subtract(long generation, Path directory, long count, long bytes, long duplicateBytes) {
+        List<String> subtrees = new ArrayList<>();
+        subtrees.add(directory.toString());
+        subtrees.addAll(ancestorsOf(directory));
+        directoryStatsRepository.subtractFiles(generation, directory.toString(), count, bytes, duplicateBytes);
+        directoryStatsRepository.subtractSubtreeFiles(generation, subtrees, count, bytes, duplicateBytes);
+        if (count > 0) {
+            directoryStatsRepository.deleteEmptySubtrees(generation, subtrees);
+        }
+    }
+
+    private void save(List<DirectoryStats> batch) {
+        directoryStatsRepository.saveAll(batch);
+        entityManager.flush();
+        entityManager.clear();
+        batch.clear();
+    }
+
+    private record GroupKey(long size, String hash, String algorithm) {
+    }
+
+    private static List<String> ancestorsOf(Path directory) {
+        List<String> ancestors = new ArrayList<>();
+        for (Path parent = directory.getParent(); parent != null; parent = parent.getParent()) {
+            ancestors.add(parent.toString());
+        }
+        return ancestors;
+    }
+}
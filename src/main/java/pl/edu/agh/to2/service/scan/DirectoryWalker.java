@@ -0,0 +1,23 @@
+package pl.edu.agh.to2.service.scan;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.regex.Pattern;
+
+public interface DirectoryWalker {
+    // The sink may be called concurrently from several threads
+    void walk(Path root, Pattern pattern, ScanMetrics metrics, Consumer<ScannedFile> sink);
+
+    default List<ScannedFile> walk(Path root, Pattern pattern, ScanMetrics metrics) {
+        List<ScannedFile> files = Collections.synchronizedList(new ArrayList<>());
+        walk(root, pattern, metrics, files::add);
+        return new ArrayList<>(files);
+    }
+
+    default List<ScannedFile> walk(Path root, Pattern pattern) {
+        return walk(root, pattern, new ScanMetrics());
+    }
+}
@@ -0,0 +1,620 @@
+package pl.edu.agh.to2.service.scan;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import pl.edu.agh.to2.model.File;
+import pl.edu.agh.to2.repository.FileBulkLoader;
+import pl.edu.agh.to2.repository.FileRepository;
+import pl.edu.agh.to2.repository.FileSnapshot;
+import pl.edu.agh.to2.service.ChunkIndex;
+import pl.edu.agh.to2.service.FileHasher;
+import pl.edu.agh.to2.service.HashCache;
+import pl.edu.agh.to2.service.NearDuplicates;
+import pl.edu.agh.to2.types.HashingMode;
+import pl.edu.agh.to2.types.ScanMode;
+
+import java.io.IOException;
+import java.nio.file.FileStore;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.LongSupplier;
+import java.util.regex.Pattern;
+
+// Scans a directory as a pipeline of stages connected by bounded queues: walk (which also reads the metadata),
+// hash, and look up and persist in batches. Memory depends on queue capacity and batch size, not on the size of
+// the tree or of the index: stored rows are queried for a batch of walked paths at a time, unchanged ones are
+// marked as seen and the rows an incremental scan did not see are deleted by a query at the end.
+// Hashing runs in a separate lane per FileStore, each with as many workers as the device handles well.
+// The hashing stage also computes the content signatures of NearDuplicates when they are enabled.
+@Component
+public class FileScanner {
+    private static final Logger logger = LoggerFactory.getLogger(FileScanner.class);
+    private static final ScannedFile END_OF_WALK = new ScannedFile(null, -1, -1, null);
+    private static final ScanTask END_OF_TASKS = new ScanTask(END_OF_WALK, null, null);
+    private static final ScanRecord END_OF_HASHING = new ScanRecord(END_OF_WALK, null, null, null);
+    private static final Object UNKNOWN_STORE = new Object();
+    // Upper bound of the directory -> lane cache of a single scan
+    private static final int MAX_CACHED_DIRECTORIES = 10_000;
+
+    private final FileRepository fileRepository;
+    private final FileBulkLoader fileBulkLoader;
+    private final FileHasher fileHasher;
+    private final HashCache hashCache;
+    private final NearDuplicates nearDuplicates;
+    private final DirectoryWalker directoryWalker;
+    private final FileStoreConcurrency fileStoreConcurrency;
+    private final ScanGenerations scanGenerations;
+    private final DirectoryRollup directoryRollup;
+    private final ChunkIndex chunkIndex;
+    private final TransactionTemplate transactionTemplate;
+    private final int queueCapacity;
+    private final int batchSize;
+    private final HashingMode hashingMode;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    public FileScanner(FileRepository fileRepository,
+                       FileBulkLoader fileBulkLoader,
+                       FileHasher fileHasher,
+                       HashCache hashCache,
+                       NearDuplicates nearDuplicates,
+                       DirectoryWalker directoryWalker,
+                       FileStoreConcurrency fileStoreConcurrency,
+                       ScanGenerations scanGenerations,
+                       DirectoryRollup directoryRollup,
+                       ChunkIndex chunkIndex,
+                       PlatformTransactionManager transactionManager,
+                       @Value("${file-cleaner.scan.queue-capacity:1000}") int queueCapacity,
+                       @Value("${file-cleaner.scan.batch-size:500}") int batchSize,
+                       @Value("${file-cleaner.hash.mode:EAGER}") HashingMode hashingMode) {
+        this.fileRepository = fileRepository;
+        this.fileBulkLoader = fileBulkLoader;
+        this.fileHasher = fileHasher;
+        this.hashCache = hashCache;
+        this.nearDuplicates = nearDuplicates;
+        this.directoryWalker = directoryWalker;
+        this.fileStoreConcurrency = fileStoreConcurrency;
+        this.scanGenerations = scanGenerations;
+        this.directoryRollup = directoryRollup;
+        this.chunkIndex = chunkIndex;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.queueCapacity = queueCapacity;
+        this.batchSize = batchSize;
+        this.hashingMode = hashingMode;
+    }
+
+    public ScanSummary scan(Path root, Pattern pattern, ScanMode mode) {
+        if (mode == ScanMode.FULL) {
+            ScanSummary summary = fullScan(root, pattern);
+            chunkIndex.updateInBackground(root.getFileSystem());
+            return summary;
+        }
+        return incrementalScan(root, pattern, mode.toString());
+    }
+
+    // Builds a new generation from scratch, the current one stays visible until it is complete. Signatures of
+    // files whose size and modification time did not change are copied from the current generation instead of
+    // reading the files again.
+    private ScanSummary fullScan(Path root, Pattern pattern) {
+        long previousCount = fileRepository.count();
+        long generation = scanGenerations.start();
+        try {
+            // The rollup of the new generation is built as a whole, there are no changes to track
+            ScanRun run = new ScanRun(root, pattern, generation, null, new RollupChanges(0));
+            ScanSummary summary = run(run, "FULL", () -> previousCount);
+            directoryRollup.rebuild(generation, root.getFileSystem());
+            scanGenerations.activate(generation);
+            return summary;
+        } catch (RuntimeException e) {
+            scanGenerations.discard(generation);
+            throw e;
+        }
+    }
+
+    // Incremental scan limited to the rows under the given directory, the rest of the index is left untouched
+    public ScanSummary rescanSubtree(Path directory, Pattern pattern) {
+        return incrementalScan(directory, pattern, "SUBTREE");
+    }
+
+    // Only rows under the scanned directory are compared with the disk, rows of other roots stay as they are
+    private ScanSummary incrementalScan(Path directory, Pattern pattern, String label) {
+        long generation = scanGenerations.activeGeneration();
+        RollupChanges changes = directoryRollup.newChanges();
+        long mark = fileRepository.nextScanMark();
+        ScanRun run = new ScanRun(directory, pattern, generation, mark, changes);
+        ScanSummary summary = run(run, label, () -> deleteUnseen(directory, mark, changes));
+        directoryRollup.apply(generation, changes, directory.getFileSystem());
+        chunkIndex.updateInBackground(directory.getFileSystem());
+        return summary;
+    }
+
+    // Brings the rows of the given paths in line with the disk. Paths that no longer exist
+    // are removed together with everything stored under them.
+    public ScanSummary applyChanges(Collection<Path> paths, Pattern pattern) {
+        long added = 0;
+        long changed = 0;
+        long removed = 0;
+        long unchanged = 0;
+        long generation = scanGenerations.activeGeneration();
+        RollupChanges changes = directoryRollup.newChanges();
+
+        for (Path path : paths) {
+            BasicFileAttributes attributes;
+            try {
+                attributes = Files.readAttributes(path, BasicFileAttributes.class);
+            } catch (IOException e) {
+                removed += transactionTemplate.execute(status -> {
+                    if (!changes.isOverflowed()) {
+                        fileRepository.findByPathOrUnder(path.toString(), subtreePrefix(path)).forEach(changes::removed);
+                    }
+                    return fileRepository.deleteByPathOrUnder(path.toString(), subtreePrefix(path));
+                });
+                continue;
+            }
+            if (attributes.isDirectory()
+                    || (pattern != null && !pattern.matcher(path.getFileName().toString()).matches())) {
+                continue;
+            }
+
+            ScannedFile file = ScannedFile.of(path, attributes);
+            Optional<File> existing = fileRepository.findByPath(path.toString());
+            if (existing.isEmpty()) {
+                File record = newFile(file, hashOrDefer(file), sketch(file), generation);
+                transactionTemplate.executeWithoutResult(status -> fileRepository.save(record));
+                changes.added(record);
+                added++;
+            } else if (existing.get().getSize() != file.size() || existing.get().getLastModified() != file.lastModified()) {
+                File record = existing.get();
+                changes.removed(record);
+                record.setSize(file.size());
+                record.setLastModified(file.lastModified());
+                String hash = hashOrDefer(file);
+                record.setHash(hash, algorithmOf(hash));
+                record.setPartialHash(null);
+                record.setMinHash(sketch(file));
+                transactionTemplate.executeWithoutResult(status -> fileRepository.save(record));
+                changes.added(record);
+                changed++;
+            } else {
+                unchanged++;
+            }
+        }
+
+        hashCache.flush();
+        ScanSummary summary = new ScanSummary(added, changed, removed, unchanged);
+        logger.info("Applied changes to {} paths: {}", paths.size(), summary);
+        if (!paths.isEmpty()) {
+            directoryRollup.apply(generation, changes, paths.iterator().next().getFileSystem());
+            chunkIndex.updateInBackground(paths.iterator().next().getFileSystem());
+        }
+        return summary;
+    }
+
+    // removed is only called once the run has succeeded
+    private ScanSummary run(ScanRun run, String label, LongSupplier removed) {
+        try {
+            run.execute();
+        } finally {
+            hashCache.flush();
+        }
+
+        ScanSummary summary = new ScanSummary(
+                run.added.get(),
+                run.changed.get(),
+                removed.getAsLong(),
+                run.unchanged.get()
+        );
+        logger.info("Files loaded from path: {}. Number of files: {}", run.root, run.metrics.getFiles());
+        logger.info("Scan summary ({}): {}", label, summary);
+        logger.info("Scan metrics: {}", run.metrics);
+        return summary;
+    }
+
+    // Whatever was not seen during the walk no longer exists under the scanned root. The rows are deleted a batch
+    // at a time while the rollup needs them, by a single statement once it has to be rebuilt anyway.
+    private long deleteUnseen(Path root, long mark, RollupChanges changes) {
+        String prefix = subtreePrefix(root);
+        long removed = 0;
+        while (!changes.isOverflowed()) {
+            int deleted = transactionTemplate.execute(status -> {
+                List<File> unseen = fileRepository.findUnseenUnder(prefix, mark, batchSize);
+                unseen.forEach(changes::removed);
+                fileRepository.deleteAllByIdInBatch(unseen.stream().map(File::getId).toList());
+                return unseen.size();
+            });
+            if (deleted == 0) {
+                return removed;
+            }
+            removed += deleted;
+        }
+        return removed + transactionTemplate.execute(status -> fileRepository.deleteUnseenUnder(prefix, mark));
+    }
+
+    private static String subtreePrefix(Path directory) {
+        return directory.toString() + directory.getFileSystem().getSeparator();
+    }
+
+    private File newFile(ScannedFile file, String hash, byte[] minHash, long generation) {
+        return newFile(file, hash, minHash, generation, null);
+    }
+
+    private File newFile(ScannedFile file, String hash, byte[] minHash, long generation, Long mark) {
+        Path path = file.path();
+        File record = new File(path.getFileName().toString(), path.toString(), file.size(), file.lastModified(),
+                hash, algorithmOf(hash));
+        record.setGeneration(generation);
+        record.setMinHash(minHash);
+        record.setScanMark(mark);
+        return record;
+    }
+
+    private String algorithmOf(String hash) {
+        return hash == null ? null : fileHasher.algorithm();
+    }
+
+    // In LAZY mode hashing is left to CandidateHasher, which only hashes files with a colliding size
+    private String hashOrDefer(ScannedFile file) {
+        return hashingMode == HashingMode.LAZY ? null : tryToHash(file);
+    }
+
+    private byte[] sketch(ScannedFile file) {
+        return nearDuplicates.sketch(file.path(), file.size());
+    }
+
+    // A file that can't be read (no permission, deleted during the walk) is stored without a hash
+    // instead of failing the whole scan
+    private String tryToHash(ScannedFile file) {
+        Path path = file.path();
+        try {
+            return hashCache.hash(fileHasher, path, file.fileKey(), file.size(), file.lastModified());
+        } catch (IOException e) {
+            logger.error("Error hashing file: {}", path, e);
+            return null;
+        }
+    }
+
+    // existingId is null for files that are not in the database yet, sketchedId is the row of the current
+    // generation whose signature the file gets instead of minHash
+    private record ScanRecord(ScannedFile file, Long existingId, String hash, byte[] minHash, Long sketchedId) {
+        ScanRecord(ScannedFile file, Long existingId, String hash, byte[] minHash) {
+            this(file, existingId, hash, minHash, null);
+        }
+    }
+
+    // A walked file on its way to hashing, with the ids of ScanRecord
+    private record ScanTask(ScannedFile file, Long existingId, Long sketchedId) {
+    }
+
+    private record HashLane(BlockingQueue<ScanTask> queue, int threads) {
+    }
+
+    private class ScanRun {
+        private final Path root;
+        private final Pattern pattern;
+        private final ScanMetrics metrics = new ScanMetrics();
+        private final long generation;
+        // Written to the rows an incremental scan sees, null for a full scan, which compares nothing
+        private final Long mark;
+        private final RollupChanges changes;
+        private final BlockingQueue<ScannedFile> walked = new ArrayBlockingQueue<>(queueCapacity);
+        // Hashed records waiting for their batch to fill, only touched by the calling thread
+        private final List<ScanRecord> pending = new ArrayList<>();
+        private int finishedHashers;
+        private final Map<Object, HashLane> lanes = new ConcurrentHashMap<>();
+        private final Map<Path, HashLane> lanesByDirectory = new ConcurrentHashMap<>();
+        private final AtomicInteger hashers = new AtomicInteger();
+        private final ExecutorService executor = Executors.newCachedThreadPool();
+        private final BlockingQueue<ScanRecord> hashed = new ArrayBlockingQueue<>(queueCapacity);
+        private final AtomicReference<Throwable> failure = new AtomicReference<>();
+        private final AtomicLong added = new AtomicLong();
+        private final AtomicLong changed = new AtomicLong();
+        private final AtomicLong unchanged = new AtomicLong();
+
+        ScanRun(Path root, Pattern pattern, long generation, Long mark, RollupChanges changes) {
+            this.root = root;
+            this.pattern = pattern;
+            this.generation = generation;
+            this.mark = mark;
+            this.changes = changes;
+        }
+
+        void execute() {
+            try {
+                executor.submit(() -> runStage(this::walk));
+                lookUpAndPersist();
+            } catch (CancellationException ignored) {
+                // The stage that failed has already recorded the reason
+            } catch (RuntimeException e) {
+                fail(e);
+            } finally {
+                executor.shutdownNow();
+            }
+
+            Throwable error = failure.get();
+            if (error instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            } else if (error != null) {
+                throw new RuntimeException("Error scanning directory: " + root, error);
+            }
+        }
+
+        private void runStage(Runnable stage) {
+            try {
+                stage.run();
+            } catch (CancellationException ignored) {
+                // Another stage has already failed and recorded the reason
+            } catch (Throwable e) {
+                fail(e);
+            }
+        }
+
+        private void fail(Throwable e) {
+            if (!failure.compareAndSet(null, e) && failure.get() != e) {
+                failure.get().addSuppressed(e);
+            }
+        }
+
+        // A failing stage records the failure instead of signalling the end of its stream,
+        // the other stages notice it on their next queue operation and stop.
+        private void walk() {
+            directoryWalker.walk(root, pattern, metrics, file -> put(walked, file));
+            put(walked, END_OF_WALK);
+        }
+
+        // An incremental scan compares the files with the rows of the active generation and only hashes new and
+        // changed ones. A full scan hashes everything and only looks for signatures it can copy.
+        private void dispatch(List<ScannedFile> batch) {
+            if (batch.isEmpty()) {
+                return;
+            }
+            Map<String, FileSnapshot> stored = storedRowsOf(batch);
+            List<Long> seen = new ArrayList<>();
+            for (ScannedFile file : batch) {
+                FileSnapshot row = stored.get(file.path().toString());
+                boolean same = row != null && row.size() == file.size() && row.lastModified() == file.lastModified();
+                if (mark != null && same) {
+                    seen.add(row.id());
+                } else if (mark != null) {
+                    putInLane(laneOf(file.path()), new ScanTask(file, row == null ? null : row.id(), null));
+                } else {
+                    boolean copy = same && nearDuplicates.covers(file.size());
+                    putInLane(laneOf(file.path()), new ScanTask(file, null, copy ? row.id() : null));
+                }
+            }
+            if (!seen.isEmpty()) {
+                transactionTemplate.executeWithoutResult(status -> fileRepository.markSeen(seen, mark));
+                unchanged.addAndGet(seen.size());
+            }
+        }
+
+        private Map<String, FileSnapshot> storedRowsOf(List<ScannedFile> batch) {
+            List<String> paths = batch.stream().map(file -> file.path().toString()).toList();
+            List<FileSnapshot> rows;
+            if (mark != null) {
+                rows = fileRepository.findSnapshotsByPathIn(paths);
+            } else if (nearDuplicates.isEnabled()) {
+                rows = fileRepository.findSketchedSnapshotsByPathIn(paths);
+            } else {
+                return Map.of();
+            }
+            Map<String, FileSnapshot> byPath = new HashMap<>();
+            rows.forEach(row -> byPath.put(row.path(), row));
+            return byPath;
+        }
+
+        // Looking up the store of every file would be expensive, files of one directory share it
+        private HashLane laneOf(Path file) {
+            Path directory = file.getParent() != null ? file.getParent() : file;
+            HashLane lane = lanesByDirectory.get(directory);
+            if (lane == null) {
+                FileStore store = fileStoreConcurrency.storeOf(directory);
+                lane = lanes.computeIfAbsent(store == null ? UNKNOWN_STORE : store, key -> openLane(store));
+                if (lanesByDirectory.size() >= MAX_CACHED_DIRECTORIES) {
+                    lanesByDirectory.clear();
+                }
+                lanesByDirectory.put(directory, lane);
+            }
+            return lane;
+        }
+
+        private HashLane openLane(FileStore store) {
+            HashLane lane = new HashLane(new ArrayBlockingQueue<>(queueCapacity), fileStoreConcurrency.threadsFor(store));
+            hashers.addAndGet(lane.threads());
+            for (int i = 0; i < lane.threads(); i++) {
+                executor.submit(() -> runStage(() -> hash(lane.queue())));
+            }
+            return lane;
+        }
+
+        private void hash(BlockingQueue<ScanTask> lane) {
+            ScanTask task;
+            while ((task = take(lane)) != END_OF_TASKS) {
+                ScannedFile file = task.file();
+                byte[] minHash = task.sketchedId() == null ? sketch(file) : null;
+                put(hashed, new ScanRecord(file, task.existingId(), hashOrDefer(file), minHash, task.sketchedId()));
+            }
+            put(hashed, END_OF_HASHING);
+        }
+
+        // The only stage that uses the database. It runs on the calling thread, so that it joins its transaction,
+        // and takes turns looking up batches of walked files and storing batches of hashed ones. Without anything
+        // to compare, walked files go on one by one.
+        private void lookUpAndPersist() {
+            int lookupSize = mark != null || nearDuplicates.isEnabled() ? batchSize : 1;
+            List<ScannedFile> batch = new ArrayList<>(lookupSize);
+            ScannedFile file;
+            while ((file = walked.poll()) != END_OF_WALK) {
+                if (file == null) {
+                    // The walk is behind, the hashers get what there is
+                    dispatch(batch);
+                    batch.clear();
+                    persistHashed(true);
+                    continue;
+                }
+                batch.add(file);
+                if (batch.size() >= lookupSize) {
+                    dispatch(batch);
+                    batch.clear();
+                    persistHashed(false);
+                }
+            }
+            dispatch(batch);
+            for (HashLane lane : lanes.values()) {
+                for (int i = 0; i < lane.threads(); i++) {
+                    putInLane(lane, END_OF_TASKS);
+                }
+            }
+
+            // No lanes are opened after this point
+            while (finishedHashers < hashers.get()) {
+                accept(take(hashed));
+            }
+            persistBatch(pending);
+            pending.clear();
+        }
+
+        // Hashers wait for this thread once hashed is full, so it stores records while a lane is full
+        private void putInLane(HashLane lane, ScanTask task) {
+            while (!lane.queue().offer(task)) {
+                persistHashed(true);
+            }
+        }
+
+        private void persistHashed(boolean wait) {
+            ScanRecord record = wait ? poll(hashed) : hashed.poll();
+            while (record != null) {
+                accept(record);
+                record = hashed.poll();
+            }
+        }
+
+        private void accept(ScanRecord record) {
+            if (record == END_OF_HASHING) {
+                finishedHashers++;
+                return;
+            }
+            pending.add(record);
+            if (pending.size() >= batchSize) {
+                persistBatch(pending);
+                pending.clear();
+            }
+        }
+
+        private void persistBatch(List<ScanRecord> batch) {
+            if (batch.isEmpty() || failure.get() != null) {
+                return;
+            }
+            transactionTemplate.executeWithoutResult(status -> {
+                Map<Long, byte[]> carried = carriedSignatures(batch);
+                List<File> inserts = new ArrayList<>();
+                Map<Long, ScanRecord> updates = new HashMap<>();
+                for (ScanRecord record : batch) {
+                    if (record.existingId() == null) {
+                        byte[] minHash = record.sketchedId() == null
+                                ? record.minHash()
+                                : carried.get(record.sketchedId());
+                        inserts.add(newFile(record.file(), record.hash(), minHash, generation, mark));
+                    } else {
+                        updates.put(record.existingId(), record);
+                    }
+                }
+
+                fileBulkLoader.insert(inserts);
+                inserts.forEach(changes::added);
+                for (File file : fileRepository.findAllById(updates.keySet())) {
+                    ScanRecord record = updates.get(file.getId());
+                    changes.removed(file);
+                    file.setSize(record.file().size());
+                    file.setLastModified(record.file().lastModified());
+                    file.setHash(record.hash(), algorithmOf(record.hash()));
+                    file.setPartialHash(null);
+                    file.setMinHash(record.minHash());
+                    file.setScanMark(mark);
+                    changes.added(file);
+                }
+
+                // Detach the batch so the persistence context does not grow with the tree
+                entityManager.flush();
+                entityManager.clear();
+                added.addAndGet(inserts.size());
+                changed.addAndGet(updates.size());
+            });
+        }
+
+        private Map<Long, byte[]> carriedSignatures(List<ScanRecord> batch) {
+            List<Long> ids = batch.stream().map(ScanRecord::sketchedId).filter(Objects::nonNull).toList();
+            Map<Long, byte[]> signatures = new HashMap<>();
+            if (!ids.isEmpty()) {
+                fileRepository.findMinHashesByIdIn(ids)
+                        .forEach(minHash -> signatures.put(minHash.id(), minHash.minHash()));
+            }
+            return signatures;
+        }
+
+        private <T> void put(BlockingQueue<T> queue, T item) {
+            try {
+                while (!queue.offer(item, 100, TimeUnit.MILLISECONDS)) {
+                    checkNotFailed();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new CancellationException("Scan interrupted");
+            }
+        }
+
+        // Waits a moment at most, null when nothing came
+        private <T> T poll(BlockingQueue<T> queue) {
+            checkNotFailed();
+            try {
+                return queue.poll(10, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new CancellationException("Scan interrupted");
+            }
+        }
+
+        private <T> T take(BlockingQueue<T> queue) {
+            try {
+                T item;
+                while ((item = queue.poll(100, TimeUnit.MILLISECONDS)) == null) {
+                    checkNotFailed();
+                }
+                return item;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new CancellationException("Scan interrupted");
+            }
+        }
+
+        private void checkNotFailed() {
+            if (failure.get() != null) {
+                throw new CancellationException("Scan cancelled");
+            }
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package pl.edu.agh.to2.service.scan;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.FileStore;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Decides how many files can be hashed at once on a given FileStore. Solid state drives are kept busy
+// with many readers, spinning disks get one or two so that their heads don't jump between files.
+@Component
+public class FileStoreConcurrency {
+    private static final Logger logger = LoggerFactory.getLogger(FileStoreConcurrency.class);
+
+    private final Path sysClassBlock;
+    private final int defaultThreads;
+    private final int ssdThreads;
+    private final int hddThreads;
+    private final Map<String, Integer> threadsByStoreName;
+    private final Map<FileStore, Integer> threadsByStore = new ConcurrentHashMap<>();
+
+    @Autowired
+    public FileStoreConcurrency(@Value("${file-cleaner.scan.hash-threads:2}") int defaultThreads,
+                                @Value("${file-cleaner.scan.hash-threads-ssd:0}") int ssdThreads,
+                                @Value("${file-cleaner.scan.hash-threads-hdd:1}") int hddThreads,
+                                @Value("${file-cleaner.scan.hash-threads-per-store:}") String threadsPerStore) {
+        this(Path.of("/sys/class/block"), defaultThreads, ssdThreads, hddThreads, threadsPerStore);
+    }
+
+    FileStoreConcurrency(Path sysClassBlock, int defaultThreads, int ssdThreads, int hddThreads, String threadsPerStore) {
+        this.sysClassBlock = sysClassBlock;
+        this.defaultThreads = Math.max(1, defaultThreads);
+        this.ssdThreads = ssdThreads > 0 ? ssdThreads : Runtime.getRuntime().availableProcessors();
+        this.hddThreads = Math.max(1, hddThreads);
+        this.threadsByStoreName = parseThreadsPerStore(threadsPerStore);
+    }
+
+    // null when the store can't be determined, such files are hashed with the default concurrency
+    public FileStore storeOf(Path directory) {
+        try {
+            return Files.getFileStore(directory);
+        } catch (IOException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    public int threadsFor(FileStore store) {
+        if (store == null) {
+            return defaultThreads;
+        }
+        return threadsByStore.computeIfAbsent(store, this::resolveThreads);
+    }
+
+    private int resolveThreads(FileStore store) {
+        Integer configured = threadsByStoreName.get(store.name());
+        if (configured != null) {
+            return configured;
+        }
+        Boolean rotational = isRotational(store.name());
+        int threads = rotational == null ? defaultThreads : rotational ? hddThreads : ssdThreads;
+        logger.info("Hashing files on {} ({}) with {} threads", store.name(),
+                rotational == null ? "unknown device" : rotational ? "HDD" : "SSD", threads);
+        return threads;
+    }
+
+    // Linux reports it in /sys/class/block/<device>/queue/rotational, partitions take it from their disk
+    Boolean isRotational(String storeName) {
+        String device = storeName.substring(storeName.lastIndexOf('/') + 1);
+        if (device.isEmpty()) {
+            return null;
+        }
+        try {
+            Path devicePath = sysClassBlock.resolve(device);
+            if (!Files.exists(devicePath)) {
+                return null;
+            }
+            devicePath = devicePath.toRealPath();
+            for (Path candidate : new Path[]{devicePath, devicePath.getParent()}) {
+                Path rotational = candidate.resolve("queue").resolve("rotational");
+                if (Files.isRegularFile(rotational)) {
+                    return Files.readString(rotational).trim().equals("1");
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            logger.debug("Could not read the device type of {}", storeName, e);
+        }
+        return null;
+    }
+
+    // Format: name=threads,name=threads where name is the FileStore name, e.g. /dev/sdb1=1
+    private static Map<String, Integer> parseThreadsPerStore(String value) {
+        Map<String, Integer> threads = new HashMap<>();
+        for (String entry : value.split(",")) {
+            int separator = entry.lastIndexOf('=');
+            if (separator > 0) {
+                threads.put(entry.substring(0, separator).trim(),
+                        Math.max(1, Integer.parseInt(entry.substring(separator + 1).trim())));
+            }
+        }
+        return threads;
+    }
+}
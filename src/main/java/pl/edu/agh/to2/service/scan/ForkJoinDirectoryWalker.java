@@ -0,0 +1,138 @@
+package pl.edu.agh.to2.service.scan;
+
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.Consumer;
+import java.util.regex.Pattern;
+
+// Follows symbolic links like the recursive walk, and like walkFileTree skips a directory that is its own
+// ancestor instead of walking the cycle
+@Component
+public class ForkJoinDirectoryWalker implements DirectoryWalker {
+    private static final Logger logger = LoggerFactory.getLogger(ForkJoinDirectoryWalker.class);
+    private final ForkJoinPool pool;
+
+    public ForkJoinDirectoryWalker(@Value("${file-cleaner.scan.parallelism:0}") int parallelism) {
+        // 0 means "use all cores"
+        this.pool = new ForkJoinPool(parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors());
+    }
+
+    @Override
+    public void walk(Path root, Pattern pattern, ScanMetrics metrics, Consumer<ScannedFile> sink) {
+        BasicFileAttributes attributes;
+        try {
+            attributes = Files.readAttributes(root, BasicFileAttributes.class);
+        } catch (IOException e) {
+            attributes = null;
+        }
+        if (attributes == null || !attributes.isDirectory()) {
+            logger.info("Invalid folder path provided.");
+            return;
+        }
+        metrics.recordDirectory();
+        pool.invoke(new DirectoryTask(new Ancestor(root, attributes.fileKey(), null), pattern, metrics, sink));
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        pool.shutdownNow();
+    }
+
+    // The directories from the root down to a directory being walked
+    private record Ancestor(Path dir, Object fileKey, Ancestor parent) {
+        boolean contains(Path candidate, Object candidateKey) {
+            for (Ancestor ancestor = this; ancestor != null; ancestor = ancestor.parent) {
+                if (isSame(ancestor, candidate, candidateKey)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        // File keys identify directories reached through different links, without them the paths are compared
+        private static boolean isSame(Ancestor ancestor, Path candidate, Object candidateKey) {
+            if (candidateKey != null && ancestor.fileKey != null) {
+                return Objects.equals(candidateKey, ancestor.fileKey);
+            }
+            try {
+                return Files.isSameFile(candidate, ancestor.dir);
+            } catch (IOException e) {
+                return false;
+            }
+        }
+    }
+
+    private static class DirectoryTask extends RecursiveAction {
+        private final Ancestor dir;
+        private final Pattern pattern;
+        private final ScanMetrics metrics;
+        private final Consumer<ScannedFile> sink;
+
+        DirectoryTask(Ancestor dir, Pattern pattern, ScanMetrics metrics, Consumer<ScannedFile> sink) {
+            this.dir = dir;
+            this.pattern = pattern;
+            this.metrics = metrics;
+            this.sink = sink;
+        }
+
+        @Override
+        protected void compute() {
+            List<DirectoryTask> subdirectories = new ArrayList<>();
+
+            try (DirectoryStream<Path> entries = Files.newDirectoryStream(dir.dir())) {
+                for (Path entry : entries) {
+                    visit(entry, subdirectories);
+                }
+            } catch (IOException e) {
+                // Same policy as the recursive walk: unreadable directories are skipped
+                logger.debug("Could not list directory: {}", dir.dir(), e);
+            }
+
+            for (DirectoryTask task : subdirectories) {
+                task.join();
+            }
+        }
+
+        private void visit(Path entry, List<DirectoryTask> subdirectories) {
+            BasicFileAttributes attributes;
+            try {
+                attributes = Files.readAttributes(entry, BasicFileAttributes.class);
+            } catch (IOException e) {
+                logger.debug("Could not read attributes: {}", entry, e);
+                return;
+            } finally {
+                metrics.recordStatCall();
+            }
+
+            if (attributes.isDirectory()) {
+                if (dir.contains(entry, attributes.fileKey())) {
+                    logger.debug("Skipping directory cycle: {}", entry);
+                    return;
+                }
+                metrics.recordDirectory();
+                DirectoryTask task = new DirectoryTask(new Ancestor(entry, attributes.fileKey(), dir), pattern,
+                        metrics, sink);
+                task.fork();
+                subdirectories.add(task);
+            } else if (pattern == null || pattern.matcher(entry.getFileName().toString()).matches()) {
+                logger.debug("File path: {}", entry);
+                metrics.recordFile();
+                sink.accept(ScannedFile.of(entry, attributes));
+            }
+        }
+    }
+}
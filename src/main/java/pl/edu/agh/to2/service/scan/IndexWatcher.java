@@ -0,0 +1,248 @@
+package pl.edu.agh.to2.service.scan;
+
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileVisitOption;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+import static java.nio.file.StandardWatchEventKinds.*;
+
+// Keeps the index of an already scanned root up to date. Events are coalesced per path and applied
+// once the directory has been quiet for the debounce period, so a burst of writes costs a single update.
+// A session is paused while a scan writes the index and kept for the next scan of the same root, so the
+// tree is only walked to register it when a different root is watched.
+@Component
+public class IndexWatcher {
+    private static final Logger logger = LoggerFactory.getLogger(IndexWatcher.class);
+    // Under constant churn the changes are applied at least this many debounce periods after the first event
+    private static final int MAX_DELAY_FACTOR = 10;
+
+    private final FileScanner fileScanner;
+    private final boolean enabled;
+    private final long debounceMillis;
+    private WatchSession session;
+
+    public IndexWatcher(FileScanner fileScanner,
+                        @Value("${file-cleaner.watch.enabled:false}") boolean enabled,
+                        @Value("${file-cleaner.watch.debounce-millis:500}") long debounceMillis) {
+        this.fileScanner = fileScanner;
+        this.enabled = enabled;
+        this.debounceMillis = debounceMillis;
+    }
+
+    public synchronized void watch(Path root, Pattern pattern) {
+        if (!enabled) {
+            return;
+        }
+        if (session != null && session.watches(root, pattern)) {
+            session.resume();
+            return;
+        }
+        stop();
+        try {
+            session = new WatchSession(root, pattern);
+            session.start();
+            logger.info("Watching directory: {}", root);
+        } catch (IOException e) {
+            logger.error("Could not watch directory: {}", root, e);
+        }
+    }
+
+    // Waits for the batch being applied, changes collected from now on are applied after resume
+    public synchronized void pause() {
+        if (session != null) {
+            session.pause();
+        }
+    }
+
+    public synchronized void resume() {
+        if (session != null) {
+            session.resume();
+        }
+    }
+
+    @PreDestroy
+    public synchronized void stop() {
+        if (session != null) {
+            session.close();
+            session = null;
+        }
+    }
+
+    private class WatchSession implements Runnable {
+        private final Path root;
+        private final Pattern pattern;
+        private final WatchService watchService;
+        private final Map<WatchKey, Path> directories = new HashMap<>();
+        private final Set<Path> changedPaths = new LinkedHashSet<>();
+        private final Set<Path> subtreesToRescan = new LinkedHashSet<>();
+        private final Thread thread;
+        // Held while a batch is applied, guards paused
+        private final Object applyLock = new Object();
+        private boolean paused;
+        private volatile boolean running = true;
+
+        WatchSession(Path root, Pattern pattern) throws IOException {
+            this.root = root;
+            this.pattern = pattern;
+            this.watchService = root.getFileSystem().newWatchService();
+            this.thread = new Thread(this, "index-watcher");
+            this.thread.setDaemon(true);
+            registerTree(root);
+        }
+
+        void start() {
+            thread.start();
+        }
+
+        boolean watches(Path root, Pattern pattern) {
+            return this.root.equals(root) && String.valueOf(this.pattern).equals(String.valueOf(pattern));
+        }
+
+        void pause() {
+            synchronized (applyLock) {
+                paused = true;
+            }
+        }
+
+        void resume() {
+            synchronized (applyLock) {
+                paused = false;
+            }
+        }
+
+        // The batch being applied is finished first, so nothing is written after close returns
+        void close() {
+            running = false;
+            try {
+                watchService.close();
+            } catch (IOException e) {
+                logger.error("Error closing watch service", e);
+            }
+            if (Thread.currentThread() != thread) {
+                try {
+                    thread.join();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+
+        @Override
+        public void run() {
+            long firstEventAt = 0;
+            while (running) {
+                try {
+                    WatchKey key = watchService.poll(debounceMillis, TimeUnit.MILLISECONDS);
+                    if (key != null) {
+                        if (!hasPendingChanges()) {
+                            firstEventAt = System.currentTimeMillis();
+                        }
+                        collect(key);
+                        if (System.currentTimeMillis() - firstEventAt < MAX_DELAY_FACTOR * debounceMillis) {
+                            continue;
+                        }
+                    }
+                    synchronized (applyLock) {
+                        if (!paused && hasPendingChanges()) {
+                            applyPendingChanges();
+                        }
+                    }
+                } catch (InterruptedException | ClosedWatchServiceException e) {
+                    break;
+                } catch (RuntimeException e) {
+                    logger.error("Error updating the index", e);
+                }
+            }
+        }
+
+        private boolean hasPendingChanges() {
+            return !changedPaths.isEmpty() || !subtreesToRescan.isEmpty();
+        }
+
+        private void collect(WatchKey key) {
+            Path directory = directories.get(key);
+            for (WatchEvent<?> event : key.pollEvents()) {
+                if (directory == null) {
+                    continue;
+                }
+                if (event.kind() == OVERFLOW) {
+                    // Some events were lost, only a rescan can tell what happened
+                    subtreesToRescan.add(directory);
+                    continue;
+                }
+
+                Path path = directory.resolve((Path) event.context());
+                if (event.kind() == ENTRY_CREATE && Files.isDirectory(path)) {
+                    // Files could have been created before the directory was registered
+                    registerTree(path);
+                    subtreesToRescan.add(path);
+                } else {
+                    changedPaths.add(path);
+                }
+            }
+            if (!key.reset()) {
+                directories.remove(key);
+            }
+        }
+
+        // Paths are forgotten only once they have been applied, a failed batch is retried after the next poll
+        private void applyPendingChanges() {
+            for (Iterator<Path> subtrees = subtreesToRescan.iterator(); subtrees.hasNext(); ) {
+                Path subtree = subtrees.next();
+                fileScanner.rescanSubtree(subtree, pattern);
+                changedPaths.removeIf(path -> path.startsWith(subtree));
+                subtrees.remove();
+            }
+            if (!changedPaths.isEmpty()) {
+                fileScanner.applyChanges(new LinkedHashSet<>(changedPaths), pattern);
+                changedPaths.clear();
+            }
+        }
+
+        // Follows links like the walkers do, so the directories the scan indexed through a link are watched too
+        private void registerTree(Path start) {
+            try {
+                Files.walkFileTree(start, EnumSet.of(FileVisitOption.FOLLOW_LINKS), Integer.MAX_VALUE,
+                        new SimpleFileVisitor<>() {
+                            @Override
+                            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs)
+                                    throws IOException {
+                                directories.put(dir.register(watchService, ENTRY_CREATE, ENTRY_DELETE, ENTRY_MODIFY),
+                                        dir);
+                                return FileVisitResult.CONTINUE;
+                            }
+
+                            @Override
+                            public FileVisitResult visitFileFailed(Path file, IOException exc) {
+                                // a link to an ancestor ends up here as a FileSystemLoopException, the cycle is skipped
+                                return FileVisitResult.CONTINUE;
+                            }
+                        });
+            } catch (IOException e) {
+                logger.error("Could not watch directory: {}", start, e);
+            }
+        }
+    }
+}
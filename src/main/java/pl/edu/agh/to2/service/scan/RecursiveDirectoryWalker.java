@@ -0,0 +1,60 @@
+package pl.edu.agh.to2.service.scan;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.FileVisitOption;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.EnumSet;
+import java.util.function.Consumer;
+import java.util.regex.Pattern;
+
+// Single-threaded walk, kept as the reference implementation for tests and benchmarks.
+public class RecursiveDirectoryWalker implements DirectoryWalker {
+    private static final Logger logger = LoggerFactory.getLogger(RecursiveDirectoryWalker.class);
+
+    @Override
+    public void walk(Path root, Pattern pattern, ScanMetrics metrics, Consumer<ScannedFile> sink) {
+        if (Files.notExists(root) || !Files.isDirectory(root)) {
+            logger.info("Invalid folder path provided.");
+            return;
+        }
+        try {
+            // walkFileTree hands us the attributes it already read, so every entry costs a single stat
+            Files.walkFileTree(root, EnumSet.of(FileVisitOption.FOLLOW_LINKS), Integer.MAX_VALUE,
+                    new SimpleFileVisitor<>() {
+                        @Override
+                        public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
+                            metrics.recordStatCall();
+                            metrics.recordDirectory();
+                            return FileVisitResult.CONTINUE;
+                        }
+
+                        @Override
+                        public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                            metrics.recordStatCall();
+                            String fileName = file.getFileName().toString();
+                            if (pattern == null || pattern.matcher(fileName).matches()) {
+                                logger.debug("File path: {}", file);
+                                metrics.recordFile();
+                                sink.accept(ScannedFile.of(file, attrs));
+                            }
+                            return FileVisitResult.CONTINUE;
+                        }
+
+                        @Override
+                        public FileVisitResult visitFileFailed(Path file, IOException exc) {
+                            // We ignore the exception because we don't want to interrupt the program's execution in case of errors while listing files in the directory
+                            return FileVisitResult.CONTINUE;
+                        }
+                    });
+        } catch (IOException e) {
+            logger.error("Error walking directory: {}", root, e);
+        }
+    }
+}
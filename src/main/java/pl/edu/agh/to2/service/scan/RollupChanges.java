@@ -0,0 +1,65 @@
+package pl.edu.agh.to2.service.scan;
+
+import pl.edu.agh.to2.model.File;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// Rows an incremental scan removed and added, a changed file is both. Past the limit only the fact that
+// something changed is kept, DirectoryRollup then rebuilds the rollup instead of applying the rows one by one.
+// Not thread-safe, filled by the stage that persists.
+class RollupChanges {
+    private final int limit;
+    private final List<FileState> removed = new ArrayList<>();
+    private final List<FileState> added = new ArrayList<>();
+    private boolean overflowed;
+
+    RollupChanges(int limit) {
+        this.limit = limit;
+    }
+
+    void removed(File file) {
+        record(removed, FileState.of(file));
+    }
+
+    void added(File file) {
+        record(added, FileState.of(file));
+    }
+
+    boolean isEmpty() {
+        return !overflowed && removed.isEmpty() && added.isEmpty();
+    }
+
+    boolean isOverflowed() {
+        return overflowed;
+    }
+
+    List<FileState> getRemoved() {
+        return removed;
+    }
+
+    List<FileState> getAdded() {
+        return added;
+    }
+
+    private void record(List<FileState> states, FileState state) {
+        if (overflowed) {
+            return;
+        }
+        if (removed.size() + added.size() >= limit) {
+            overflowed = true;
+            removed.clear();
+            added.clear();
+            return;
+        }
+        states.add(state);
+    }
+
+    // The columns of a row the rollup depends on, copied before the row is changed or deleted
+    record FileState(String path, long size, long lastModified, String hash, String hashAlgorithm) {
+        static FileState of(File file) {
+            return new FileState(file.getPath(), file.getSize(), file.getLastModified(), file.getHash(),
+                    file.getHashAlgorithm());
+        }
+    }
+}
@@ -0,0 +1,141 @@
+package pl.edu.agh.to2.service.scan;
+
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import pl.edu.agh.to2.model.ScanGeneration;
+import pl.edu.agh.to2.repository.DirectoryStatsRepository;
+import pl.edu.agh.to2.repository.FileRepository;
+import pl.edu.agh.to2.repository.ScanGenerationRepository;
+import pl.edu.agh.to2.service.ChunkIndex;
+import pl.edu.agh.to2.types.ScanGenerationState;
+
+import java.time.Clock;
+import java.time.LocalDateTime;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+// Lifecycle of scan generations: a full scan starts a PENDING one, activates it when done (retiring the previous
+// one in the same transaction) and leaves the rows of retired generations to be deleted in the background.
+@Component
+public class ScanGenerations {
+    private static final Logger logger = LoggerFactory.getLogger(ScanGenerations.class);
+
+    private final ScanGenerationRepository scanGenerationRepository;
+    private final FileRepository fileRepository;
+    private final DirectoryStatsRepository directoryStatsRepository;
+    private final ChunkIndex chunkIndex;
+    private final TransactionTemplate transactionTemplate;
+    private final Clock clock;
+    private final int batchSize;
+    // Generations started by this process, PENDING generations not in here were left behind by a crash
+    private final Set<Long> inProgress = ConcurrentHashMap.newKeySet();
+    private final ExecutorService collector = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "generation-collector");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public ScanGenerations(ScanGenerationRepository scanGenerationRepository,
+                           FileRepository fileRepository,
+                           DirectoryStatsRepository directoryStatsRepository,
+                           ChunkIndex chunkIndex,
+                           PlatformTransactionManager transactionManager,
+                           Clock clock,
+                           @Value("${file-cleaner.scan.batch-size:500}") int batchSize) {
+        this.scanGenerationRepository = scanGenerationRepository;
+        this.fileRepository = fileRepository;
+        this.directoryStatsRepository = directoryStatsRepository;
+        this.chunkIndex = chunkIndex;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.clock = clock;
+        this.batchSize = batchSize;
+    }
+
+    // Incremental updates are applied in place, to the generation readers see
+    public long activeGeneration() {
+        return scanGenerationRepository.findActiveId();
+    }
+
+    // Synchronized with the collector, so that it can't take the new generation for an abandoned one
+    public synchronized long start() {
+        ScanGeneration generation = transactionTemplate.execute(status -> scanGenerationRepository.save(
+                new ScanGeneration(ScanGenerationState.PENDING, LocalDateTime.now(clock))));
+        inProgress.add(generation.getId());
+        return generation.getId();
+    }
+
+    // Synchronized so that two scans finishing together can't both see the same ACTIVE generation and leave two
+    // of them behind, uk_scan_generation_active rejects that across processes
+    public synchronized void activate(long id) {
+        transactionTemplate.executeWithoutResult(status -> {
+            scanGenerationRepository.findAllByState(ScanGenerationState.ACTIVE)
+                    .forEach(generation -> generation.setState(ScanGenerationState.RETIRED));
+            // The previous generation has to be retired before the unique index sees the new one
+            scanGenerationRepository.flush();
+            scanGenerationRepository.findById(id)
+                    .orElseThrow(() -> new IllegalStateException("Unknown scan generation: " + id))
+                    .setState(ScanGenerationState.ACTIVE);
+        });
+        inProgress.remove(id);
+        logger.info("Scan generation {} is now active", id);
+        collectGarbage();
+    }
+
+    public void discard(long id) {
+        transactionTemplate.executeWithoutResult(status -> scanGenerationRepository.findById(id)
+                .ifPresent(generation -> generation.setState(ScanGenerationState.RETIRED)));
+        inProgress.remove(id);
+        collectGarbage();
+    }
+
+    public void collectGarbage() {
+        collector.submit(() -> {
+            try {
+                deleteInactiveGenerations();
+            } catch (RuntimeException e) {
+                logger.error("Error deleting old scan generations", e);
+            }
+        });
+    }
+
+    private synchronized void retireAbandonedGenerations() {
+        transactionTemplate.executeWithoutResult(status -> scanGenerationRepository
+                .findAllByState(ScanGenerationState.PENDING).stream()
+                .filter(generation -> !inProgress.contains(generation.getId()))
+                .forEach(generation -> generation.setState(ScanGenerationState.RETIRED)));
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        collector.shutdownNow();
+    }
+
+    private void deleteInactiveGenerations() {
+        retireAbandonedGenerations();
+
+        // Small transactions, so that readers and running scans are not held up
+        long deleted = 0;
+        int batch;
+        do {
+            batch = transactionTemplate.execute(status -> fileRepository.deleteInactiveGenerations(batchSize));
+            deleted += batch;
+        } while (batch > 0 && !Thread.currentThread().isInterrupted());
+
+        transactionTemplate.executeWithoutResult(status -> directoryStatsRepository.deleteInactiveGenerations());
+        if (chunkIndex.isEnabled()) {
+            chunkIndex.deleteOrphans();
+        }
+        transactionTemplate.executeWithoutResult(status ->
+                scanGenerationRepository.deleteAllByState(ScanGenerationState.RETIRED));
+        if (deleted > 0) {
+            logger.info("Deleted {} files of old scan generations", deleted);
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package pl.edu.agh.to2.service.scan;
+
+import java.util.concurrent.atomic.LongAdder;
+
+public class ScanMetrics {
+    private final LongAdder statCalls = new LongAdder();
+    private final LongAdder files = new LongAdder();
+    private final LongAdder directories = new LongAdder();
+
+    public void recordStatCall() {
+        statCalls.increment();
+    }
+
+    public void recordFile() {
+        files.increment();
+    }
+
+    public void recordDirectory() {
+        directories.increment();
+    }
+
+    public long getStatCalls() {
+        return statCalls.sum();
+    }
+
+    public long getFiles() {
+        return files.sum();
+    }
+
+    public long getDirectories() {
+        return directories.sum();
+    }
+
+    public double getStatCallsPerFile() {
+        long fileCount = getFiles();
+        return fileCount == 0 ? 0 : (double) getStatCalls() / fileCount;
+    }
+
+    @Override
+    public String toString() {
+        return "files=%d, directories=%d, stat calls=%d (%.2f per file)"
+                .formatted(getFiles(), getDirectories(), getStatCalls(), getStatCallsPerFile());
+    }
+}
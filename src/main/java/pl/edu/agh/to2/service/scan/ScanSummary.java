@@ -0,0 +1,9 @@
+package pl.edu.agh.to2.service.scan;
+
+public record ScanSummary(
+        long added,
+        long changed,
+        long removed,
+        long unchanged
+) {
+}
@@ -0,0 +1,13 @@
+package pl.edu.agh.to2.service.scan;
+
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+
+// fileKey identifies the file on its device (e.g. device and inode on Unix), null where not supported
+public record ScannedFile(Path path, long size, long lastModified, String fileKey) {
+    public static ScannedFile of(Path path, BasicFileAttributes attributes) {
+        Object fileKey = attributes.fileKey();
+        return new ScannedFile(path, attributes.size(), attributes.lastModifiedTime().toMillis(),
+                fileKey == null ? null : fileKey.toString());
+    }
+}
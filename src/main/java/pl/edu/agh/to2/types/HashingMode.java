@@ -0,0 +1,6 @@
+package pl.edu.agh.to2.types;
+
+public enum HashingMode {
+    EAGER,
+    LAZY,
+}
@@ -0,0 +1,7 @@
+package pl.edu.agh.to2.types;
+
+public enum ScanGenerationState {
+    PENDING,
+    ACTIVE,
+    RETIRED,
+}
@@ -0,0 +1,8 @@
+package pl.edu.agh.to2.types;
+
+public enum ScanMode {
+    // Replaces the whole index with the files under the scanned root
+    FULL,
+    // Updates only the rows under the scanned root, rows of other roots are kept
+    INCREMENTAL,
+}
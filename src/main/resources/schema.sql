@@ -1 +1,44 @@
-CREATE EXTENSION IF NOT EXISTS fuzzystrmatch;
\ No newline at end of file
+CREATE EXTENSION IF NOT EXISTS fuzzystrmatch;
+-- hash became nullable (lazy hashing), ddl-auto=update does not relax existing constraints
+ALTER TABLE IF EXISTS file ALTER COLUMN hash DROP NOT NULL;
+-- hashes moved from hex varchar to bytea, ddl-auto=update does not change column types
+-- (the body is quoted so that the script is not split on its semicolons)
+DO '
+DECLARE
+    hash_column record;
+BEGIN
+    FOR hash_column IN
+        SELECT table_name, column_name FROM information_schema.columns
+        WHERE (table_name, column_name) IN ((''file'', ''hash''), (''file'', ''partial_hash''), (''hash_cache_entry'', ''hash''))
+          AND data_type <> ''bytea''
+    LOOP
+        EXECUTE format(''ALTER TABLE %I ALTER COLUMN %I TYPE bytea USING decode(%I, ''''hex'''')'',
+                       hash_column.table_name, hash_column.column_name, hash_column.column_name);
+    END LOOP;
+END';
+-- scan generations: existing rows become generation 0 and a path is only unique within a generation
+ALTER TABLE IF EXISTS file ADD COLUMN IF NOT EXISTS generation bigint NOT NULL DEFAULT 0;
+DO '
+DECLARE
+    path_constraint record;
+BEGIN
+    FOR path_constraint IN
+        SELECT con.conname FROM pg_constraint con
+        JOIN pg_class rel ON rel.oid = con.conrelid
+        JOIN pg_attribute att ON att.attrelid = rel.oid AND att.attnum = con.conkey[1]
+        WHERE rel.relname = ''file'' AND con.contype = ''u'' AND cardinality(con.conkey) = 1 AND att.attname = ''path''
+    LOOP
+        EXECUTE format(''ALTER TABLE file DROP CONSTRAINT %I'', path_constraint.conname);
+    END LOOP;
+END';
+-- the extension is extracted once at ingest, rows of older versions get it here (same rule as File.extensionOf)
+DO '
+BEGIN
+    IF to_regclass(''file'') IS NOT NULL AND NOT EXISTS (
+        SELECT 1 FROM information_schema.columns WHERE table_name = ''file'' AND column_name = ''extension'') THEN
+        ALTER TABLE file ADD COLUMN extension varchar(255) NOT NULL DEFAULT '''';
+        UPDATE file SET extension = CASE WHEN name LIKE ''%.%'' THEN split_part(name, ''.'', -1) ELSE '''' END;
+    END IF;
+END';
+-- incremental scans mark the rows they see with a value of their own, see FileScanner
+CREATE SEQUENCE IF NOT EXISTS scan_mark_seq;
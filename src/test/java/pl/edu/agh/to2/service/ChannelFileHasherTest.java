@@ -0,0 +1,70 @@
+package pl.edu.agh.to2.service;
+
+import com.google.common.jimfs.Configuration;
+import com.google.common.jimfs.Jimfs;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.io.IOException;
+import java.nio.file.FileSystem;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class ChannelFileHasherTest {
+    // Small threshold and window so that mapping is used and a file spans several windows
+    private final ChannelFileHasher fileHasher = new ChannelFileHasher(100_000, 150_000);
+    private final SHA256FileHasher referenceHasher = new SHA256FileHasher();
+    private final Random random = new Random(42);
+    private FileSystem fs;
+
+    @TempDir
+    Path tempDir;
+
+    @BeforeEach
+    void setUp() {
+        fs = Jimfs.newFileSystem(Configuration.unix());
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        fs.close();
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {0, 1, 65_536, 65_537, 99_999, 100_000, 1_048_577, 3_000_001})
+    void testHash_MatchesSHA256FileHasher(int size) throws IOException {
+        // given
+        Path file = Files.write(tempDir.resolve("file"), randomBytes(size));
+
+        // when
+        String hash = fileHasher.hash(file);
+
+        // then
+        assertEquals(referenceHasher.hash(file), hash);
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {1_000, 3_000_001})
+    void testHash_FallsBackToReadingWhenMappingIsNotSupported(int size) throws IOException {
+        // given
+        Path file = Files.write(fs.getPath("file"), randomBytes(size));
+
+        // when
+        String hash = fileHasher.hash(file);
+
+        // then
+        assertEquals(referenceHasher.hash(file), hash);
+    }
+
+    private byte[] randomBytes(int size) {
+        byte[] bytes = new byte[size];
+        random.nextBytes(bytes);
+        return bytes;
+    }
+}
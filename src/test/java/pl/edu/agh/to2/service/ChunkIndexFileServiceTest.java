@@ -0,0 +1,124 @@
+package pl.edu.agh.to2.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.context.TestPropertySource;
+import pl.edu.agh.to2.repository.BlockDedupStats;
+import pl.edu.agh.to2.repository.ChunkedFileRepository;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// The scanner leaves chunking to a background thread that can't see the rows of the test transaction,
+// the tests update the index themselves
+@TestPropertySource(properties = {
+        "file-cleaner.chunking.enabled=true",
+        "file-cleaner.chunking.average-chunk-kb=4",
+        "file-cleaner.chunking.min-file-mb=0"
+})
+class ChunkIndexFileServiceTest extends FileServiceTestBase {
+    @Autowired
+    private ChunkIndex chunkIndex;
+    @Autowired
+    private ChunkedFileRepository chunkedFileRepository;
+
+    @BeforeEach
+    void setup() {
+        chunkedFileRepository.deleteAll();
+    }
+
+    @Test
+    void testFindFilesSharingContent_ReportsPairsOfPartlyEqualFiles() throws IOException {
+        // given
+        Path dir = Files.createDirectory(fs.getPath("Backups/"));
+        byte[] backup = randomBytes(1, 200_000);
+        byte[] appended = new byte[backup.length + 50_000];
+        System.arraycopy(backup, 0, appended, 0, backup.length);
+        System.arraycopy(randomBytes(2, 50_000), 0, appended, backup.length, 50_000);
+        Files.write(dir.resolve("monday.img"), backup);
+        Files.write(dir.resolve("tuesday.img"), appended);
+        Files.write(dir.resolve("other.img"), randomBytes(3, 100_000));
+        fileService.loadFromPath(dir, defaultPattern);
+        chunkIndex.update(fs);
+
+        // when
+        List<SharedContent> pairs = fileService.findFilesSharingContent(10);
+
+        // then
+        assertEquals(1, pairs.size());
+        assertEquals(Set.of("Backups/monday.img", "Backups/tuesday.img"),
+                Set.of(pairs.get(0).first().getPath(), pairs.get(0).second().getPath()));
+        // All of monday.img but its last chunk, which ends where tuesday.img goes on
+        assertTrue(pairs.get(0).sharedBytes() > 150_000, "shared bytes: " + pairs.get(0).sharedBytes());
+    }
+
+    @Test
+    void testGetBlockDedupStats_DoesNotChunkFiles() throws IOException {
+        // given
+        Path dir = Files.createDirectory(fs.getPath("Backups/"));
+        Files.write(dir.resolve("a.img"), randomBytes(1, 100_000));
+        fileService.loadFromPath(dir, defaultPattern);
+
+        // when
+        BlockDedupStats stats = fileService.getBlockDedupStats().orElseThrow();
+
+        // then
+        assertEquals(0, stats.files());
+        assertEquals(0, chunkedFileRepository.count());
+    }
+
+    @Test
+    void testGetBlockDedupStats_CountsBytesOfRepeatedChunksOnce() throws IOException {
+        // given
+        Path dir = Files.createDirectory(fs.getPath("Backups/"));
+        byte[] bytes = randomBytes(1, 100_000);
+        Files.write(dir.resolve("a.img"), bytes);
+        Files.write(dir.resolve("b.img"), bytes);
+        fileService.loadFromPath(dir, defaultPattern);
+        chunkIndex.update(fs);
+
+        // when
+        BlockDedupStats stats = fileService.getBlockDedupStats().orElseThrow();
+
+        // then
+        assertEquals(2, stats.files());
+        assertEquals(200_000, stats.bytes());
+        assertEquals(100_000, stats.reclaimableBytes());
+    }
+
+    @Test
+    void testUpdate_ChunksChangedFilesAgain() throws IOException {
+        // given
+        Path dir = Files.createDirectory(fs.getPath("Backups/"));
+        Path file = Files.write(dir.resolve("a.img"), randomBytes(1, 100_000));
+        fileService.loadFromPath(dir, defaultPattern);
+        chunkIndex.update(fs);
+        Files.write(file, randomBytes(2, 50_000));
+        Files.setLastModifiedTime(file, FileTime.fromMillis(0));
+        fileService.loadFromPath(dir, defaultPattern);
+
+        // when
+        long chunked = chunkIndex.update(fs);
+
+        // then
+        BlockDedupStats stats = fileService.getBlockDedupStats().orElseThrow();
+        assertEquals(1, chunked);
+        assertEquals(1, stats.files());
+        assertEquals(50_000, stats.bytes());
+        assertEquals(1, chunkedFileRepository.count());
+    }
+
+    private static byte[] randomBytes(long seed, int count) {
+        byte[] bytes = new byte[count];
+        new Random(seed).nextBytes(bytes);
+        return bytes;
+    }
+}
@@ -0,0 +1,94 @@
+package pl.edu.agh.to2.service;
+
+import com.google.common.jimfs.Configuration;
+import com.google.common.jimfs.Jimfs;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.FileSystem;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ContentChunkerTest {
+    private final ContentChunker chunker = new ContentChunker(4096);
+    private FileSystem fs;
+    private Path tempDir;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        fs = Jimfs.newFileSystem(Configuration.unix());
+        tempDir = Files.createDirectory(fs.getPath("testDir"));
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        fs.close();
+    }
+
+    @Test
+    void testChunk_CoversTheWholeFileWithinTheSizeLimits() throws IOException {
+        // given
+        Path file = Files.write(tempDir.resolve("file"), randomBytes(1_000_000));
+        List<Integer> lengths = new ArrayList<>();
+
+        // when
+        chunker.chunk(file, (hash, length) -> lengths.add(length));
+
+        // then
+        assertEquals(1_000_000, lengths.stream().mapToLong(Integer::longValue).sum());
+        assertTrue(lengths.subList(0, lengths.size() - 1).stream().allMatch(length -> length >= 1024 && length <= 32768));
+        assertTrue(lengths.size() > 1_000_000 / 32768);
+    }
+
+    @Test
+    void testChunk_InsertionOnlyChangesTheChunksAroundIt() throws IOException {
+        // given
+        byte[] bytes = randomBytes(1_000_000);
+        byte[] edited = new byte[bytes.length + 10];
+        System.arraycopy(bytes, 0, edited, 0, 500_000);
+        System.arraycopy(bytes, 500_000, edited, 500_010, 500_000);
+        Path original = Files.write(tempDir.resolve("original"), bytes);
+        Path insertion = Files.write(tempDir.resolve("insertion"), edited);
+        Set<Long> originalChunks = new HashSet<>();
+        long[] sharedBytes = new long[1];
+
+        // when
+        chunker.chunk(original, (hash, length) -> originalChunks.add(hash));
+        chunker.chunk(insertion, (hash, length) -> {
+            if (originalChunks.contains(hash)) {
+                sharedBytes[0] += length;
+            }
+        });
+
+        // then
+        assertTrue(sharedBytes[0] > 900_000, "shared bytes: " + sharedBytes[0]);
+    }
+
+    @Test
+    void testChunk_FileSmallerThanTheMinimumIsASingleChunk() throws IOException {
+        // given
+        Path file = Files.write(tempDir.resolve("file"), randomBytes(100));
+        List<Integer> lengths = new ArrayList<>();
+
+        // when
+        chunker.chunk(file, (hash, length) -> lengths.add(length));
+
+        // then
+        assertEquals(List.of(100), lengths);
+    }
+
+    private static byte[] randomBytes(int count) {
+        byte[] bytes = new byte[count];
+        new Random(42).nextBytes(bytes);
+        return bytes;
+    }
+}
@@ -0,0 +1,106 @@
+package pl.edu.agh.to2.service;
+
+import com.google.common.jimfs.Configuration;
+import com.google.common.jimfs.Jimfs;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import pl.edu.agh.to2.model.File;
+
+import java.io.IOException;
+import java.nio.file.FileSystem;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class DuplicateVerifierTest {
+    private static final int BLOCK_SIZE = 4096;
+    private final DuplicateVerifier verifier = new DuplicateVerifier(true, BLOCK_SIZE / 1024, 2);
+    private FileSystem fs;
+    private Path tempDir;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        fs = Jimfs.newFileSystem(Configuration.unix());
+        tempDir = Files.createDirectory(fs.getPath("testDir"));
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        fs.close();
+    }
+
+    @Test
+    void testCompare_KeepsGroupsOfEqualFiles() throws IOException {
+        // given
+        byte[] bytes = new byte[10 * BLOCK_SIZE + 1];
+        List<File> group = List.of(file("a", bytes), file("b", bytes), file("c", bytes));
+
+        // when
+        DuplicateVerifier.Verification verification = verifier.compare(List.of(group), fs);
+
+        // then
+        assertEquals(List.of(group), verification.groups());
+        assertEquals(0, verification.splitGroups());
+        assertEquals(3L * bytes.length, verification.bytesCompared());
+    }
+
+    @Test
+    void testCompare_SplitsGroupsWhoseMembersDiffer() throws IOException {
+        // given
+        byte[] bytes = new byte[10 * BLOCK_SIZE];
+        File a = file("a", bytes);
+        File b = file("b", bytes);
+        bytes[5 * BLOCK_SIZE] = 1;
+        File c = file("c", bytes);
+        File d = file("d", bytes);
+        bytes[0] = 1;
+        File e = file("e", bytes);
+
+        // when
+        DuplicateVerifier.Verification verification = verifier.compare(List.of(List.of(a, b, c, d, e)), fs);
+
+        // then
+        assertEquals(List.of(List.of(a, b), List.of(c, d)), verification.groups());
+        assertEquals(1, verification.splitGroups());
+    }
+
+    @Test
+    void testCompare_StopsAtTheFirstDifferingBlock() throws IOException {
+        // given
+        byte[] bytes = new byte[10 * BLOCK_SIZE];
+        File a = file("a", bytes);
+        bytes[BLOCK_SIZE] = 1;
+        File b = file("b", bytes);
+
+        // when
+        DuplicateVerifier.Verification verification = verifier.compare(List.of(List.of(a, b)), fs);
+
+        // then
+        assertEquals(List.of(), verification.groups());
+        assertEquals(2L * 2 * BLOCK_SIZE, verification.bytesCompared());
+    }
+
+    @Test
+    void testCompare_LeavesOutFilesChangedSinceTheScan() throws IOException {
+        // given
+        byte[] bytes = new byte[BLOCK_SIZE];
+        File a = file("a", bytes);
+        File b = file("b", bytes);
+        File c = file("c", bytes);
+        Files.write(fs.getPath(c.getPath()), new byte[2 * BLOCK_SIZE]);
+
+        // when
+        DuplicateVerifier.Verification verification = verifier.compare(List.of(List.of(a, b, c)), fs);
+
+        // then
+        assertEquals(List.of(List.of(a, b)), verification.groups());
+    }
+
+    private File file(String name, byte[] bytes) throws IOException {
+        Path path = Files.write(tempDir.resolve(name), bytes);
+        return new File(name, path.toString(), bytes.length, 0, "ab");
+    }
+}
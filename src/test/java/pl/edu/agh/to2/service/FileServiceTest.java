@@ -1,33 +1,26 @@
 package pl.edu.agh.to2.service;
 
-import com.google.common.jimfs.Configuration;
-import com.google.common.jimfs.Jimfs;
-import jakarta.transaction.Transactional;
-import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
-import org.mockito.InjectMocks;
-import org.mockito.Mockito;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.boot.test.context.SpringBootTest;
-import org.springframework.boot.test.mock.mockito.MockBean;
-import org.springframework.test.context.ActiveProfiles;
+import pl.edu.agh.to2.model.DirectoryStats;
 import pl.edu.agh.to2.model.File;
 import pl.edu.agh.to2.repository.ActionLogRepository;
-import pl.edu.agh.to2.repository.FileRepository;
+import pl.edu.agh.to2.repository.ExtensionStats;
 import pl.edu.agh.to2.repository.FileSizeStats;
+import pl.edu.agh.to2.service.scan.ScanSummary;
 import pl.edu.agh.to2.types.ActionType;
+import pl.edu.agh.to2.types.ScanMode;
 
 import java.io.IOException;
 import java.io.InputStream;
-import java.nio.file.FileSystem;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.attribute.FileTime;
-import java.time.Clock;
 import java.time.Instant;
 import java.time.ZoneId;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
 import java.util.concurrent.TimeUnit;
@@ -41,39 +34,13 @@ import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.*;
 
 
-@SpringBootTest
-@ActiveProfiles("test")
-@Transactional
-class FileServiceTest {
-    private static final Pattern defaultPattern = Pattern.compile(".*");
-    FileSystem fs;
-
-    @Autowired
-    @InjectMocks
-    private FileService fileService;
-    @Autowired
-    private FileRepository fileRepository;
+class FileServiceTest extends FileServiceTestBase {
     @Autowired
     private ActionLogRepository actionLogRepository;
-    @MockBean
-    private FileHasher fileHasher;
-    @MockBean
-    private Clock clock;
 
     @BeforeEach
-    void setup() throws IOException {
-        fileRepository.deleteAll();
+    void setup() {
         actionLogRepository.deleteAll();
-
-        when(fileHasher.hash(Mockito.any())).thenReturn("hash");
-        when(clock.instant()).thenReturn(Instant.now());
-        when(clock.getZone()).thenReturn(ZoneId.systemDefault());
-        fs = Jimfs.newFileSystem(Configuration.unix());
-    }
-
-    @AfterEach
-    void tearDown() throws IOException {
-        fs.close();
     }
 
     List<Path> setupDirectory(Path dir, String... fileNames) throws IOException {
@@ -114,10 +81,10 @@ class FileServiceTest {
     @Test
     void testFindLargestFiles() {
         // given
-        File a = new File("a.txt", "Docs/a.txt", 100, 100, "a");
-        File b = new File("b.txt", "Docs/b.txt", 200, 200, "b");
-        File c = new File("c.txt", "Docs/c.txt", 300, 300, "c");
-        File d = new File("notes.txt", "Desktop/notes.txt", 400, 400, "d");
+        File a = new File("a.txt", "Docs/a.txt", 100, 100, "0a");
+        File b = new File("b.txt", "Docs/b.txt", 200, 200, "0b");
+        File c = new File("c.txt", "Docs/c.txt", 300, 300, "0c");
+        File d = new File("notes.txt", "Desktop/notes.txt", 400, 400, "0d");
 
         fileRepository.saveAll(List.of(a, b, c, d));
 
@@ -131,6 +98,43 @@ class FileServiceTest {
         );
     }
 
+    @Test
+    void testFindFilesInPath_WildcardCharactersInPathsAreMatchedLiterally() {
+        // given
+        File a = new File("a.txt", "Docs_1/a.txt", 100, 100, "0a");
+        File b = new File("b.txt", "DocsX1/b.txt", 200, 200, "0b");
+        File c = new File("c.txt", "Docs%/c.txt", 300, 300, "0c");
+        File d = new File("d.txt", "Docs/d.txt", 400, 400, "0d");
+        fileRepository.saveAll(List.of(a, b, c, d));
+
+        // when
+        List<File> underscore = fileService.findFilesInPath(Path.of("Docs_1"));
+        List<File> percent = fileService.findLargestFilesIn(Path.of("Docs%"), 10);
+
+        // then
+        assertEquals(List.of("a.txt"), underscore.stream().map(File::getName).toList());
+        assertEquals(List.of("c.txt"), percent.stream().map(File::getName).toList());
+    }
+
+    @Test
+    void testFindFilesInPath_ReturnsPagesInPathOrder() throws IOException {
+        // given
+        Path dir = fs.getPath("Docs/");
+        setupDirectory(dir, "e.txt", "a.txt", "d.txt", "c.txt", "b.txt");
+        fileService.loadFromPath(dir, defaultPattern);
+
+        // when
+        List<File> first = fileService.findFilesInPath(dir, "", 0, 2);
+        List<File> second = fileService.findFilesInPath(dir, first.get(1).getPath(), 0, 2);
+        List<File> last = fileService.findFilesInPath(dir, first.get(1).getPath(), 2, 2);
+
+        // then
+        assertEquals(5, fileService.countFilesInPath(dir));
+        assertEquals(List.of("a.txt", "b.txt"), first.stream().map(File::getName).toList());
+        assertEquals(List.of("c.txt", "d.txt"), second.stream().map(File::getName).toList());
+        assertEquals(List.of("e.txt"), last.stream().map(File::getName).toList());
+    }
+
     @Test
     void testLoadFromPath_WhenDatabaseIsEmpty_AddsAllTheFiles() throws IOException {
         // given
@@ -199,11 +203,44 @@ class FileServiceTest {
         assertEquals("b.txt", files.get(0).getName());
     }
 
+    @Test
+    void testLoadFromPath_WhenScanFails_PreviousFilesStayVisible() throws IOException {
+        // given
+        Path dir = fs.getPath("Docs/");
+        List<Path> files = setupDirectory(dir, "a.txt", "b.txt");
+        fileService.loadFromPath(dir, defaultPattern);
+
+        Files.createFile(dir.resolve("c.txt"));
+        when(fileHasher.hash(files.get(1))).thenThrow(new IllegalStateException("hasher failure"));
+
+        // when
+        assertThrows(RuntimeException.class, () -> fileService.loadFromPath(dir, defaultPattern));
+
+        // then
+        List<String> names = fileService.findFilesInPath(dir).stream().map(File::getName).sorted().toList();
+        assertEquals(List.of("a.txt", "b.txt"), names);
+    }
+
+    @Test
+    void testLoadFromPath_WhenFileCannotBeRead_ItIsStoredWithoutHash() throws IOException {
+        // given
+        Path dir = fs.getPath("Docs/");
+        List<Path> files = setupDirectoryWithHashes(dir, List.of("a.txt", "b.txt"), List.of("0a", "0b"));
+        when(fileHasher.hash(files.get(1))).thenThrow(new IOException("permission denied"));
+
+        // when
+        fileService.loadFromPath(dir, defaultPattern);
+
+        // then
+        assertEquals("0a", fileRepository.findByPath("Docs/a.txt").orElseThrow().getHash());
+        assertNull(fileRepository.findByPath("Docs/b.txt").orElseThrow().getHash());
+    }
+
     @Test
     void testLoadFromPath_ComputesHashForNewFiles() throws IOException {
         // given
         Path dir = fs.getPath("Docs/");
-        Path a = setupDirectoryWithHashes(dir, List.of("a.txt"), List.of("a_hash")).get(0);
+        Path a = setupDirectoryWithHashes(dir, List.of("a.txt"), List.of("0a")).get(0);
 
         // when
         fileService.loadFromPath(dir, defaultPattern);
@@ -211,7 +248,7 @@ class FileServiceTest {
         // then
         verify(fileHasher).hash(a);
         File fileA = fileRepository.findByPath("Docs/a.txt").orElseThrow();
-        assertEquals("a_hash", fileA.getHash());
+        assertEquals("0a", fileA.getHash());
     }
 
     @Test
@@ -220,7 +257,7 @@ class FileServiceTest {
         Path dir = fs.getPath("Docs/");
         List<Path> files = setupDirectoryWithHashes(dir,
                 List.of("a.txt", "b.txt", "c.txt", "d.txt"),
-                List.of("a_hash", "b_hash", "c_hash", "d_hash")
+                List.of("0a", "0b", "0c", "0d")
         );
 
         fileService.loadFromPath(dir, defaultPattern);
@@ -242,6 +279,56 @@ class FileServiceTest {
 
     }
 
+    @Test
+    void testLoadFromPath_Incremental_OnlyHashesAddedAndChangedFiles() throws IOException {
+        // given
+        Path dir = fs.getPath("Docs/");
+        List<Path> files = setupDirectoryWithHashes(dir,
+                List.of("a.txt", "b.txt", "c.txt", "d.txt"),
+                List.of("0a", "0b", "0c", "0d")
+        );
+        fileService.loadFromPath(dir, defaultPattern, ScanMode.INCREMENTAL);
+
+        Files.setLastModifiedTime(files.get(0), FileTime.from(123, TimeUnit.SECONDS));
+        Files.delete(files.get(3));
+        Path e = Files.createFile(dir.resolve("e.txt"));
+        when(fileHasher.hash(files.get(0))).thenReturn("0a02");
+
+        // when
+        ScanSummary summary = fileService.loadFromPath(dir, defaultPattern, ScanMode.INCREMENTAL);
+
+        // then
+        assertEquals(new ScanSummary(1, 1, 1, 2), summary);
+        verify(fileHasher, times(2)).hash(files.get(0));
+        verify(fileHasher, times(1)).hash(files.get(1));
+        verify(fileHasher, times(1)).hash(files.get(2));
+        verify(fileHasher, times(1)).hash(e);
+
+        assertEquals(4, fileRepository.findAll().size());
+        assertTrue(fileRepository.findByPath("Docs/d.txt").isEmpty());
+        File fileA = fileRepository.findByPath("Docs/a.txt").orElseThrow();
+        assertEquals("0a02", fileA.getHash());
+        assertEquals(123_000, fileA.getLastModified());
+    }
+
+    @Test
+    void testLoadFromPath_Incremental_KeepsFilesOutsideOfScannedRoot() throws IOException {
+        // given
+        Path docs = fs.getPath("Docs/");
+        Path desktop = fs.getPath("Desktop/");
+        setupDirectory(docs, "a.txt");
+        setupDirectory(desktop, "b.txt");
+        fileService.loadFromPath(docs, defaultPattern, ScanMode.INCREMENTAL);
+
+        // when
+        ScanSummary summary = fileService.loadFromPath(desktop, defaultPattern, ScanMode.INCREMENTAL);
+
+        // then
+        assertEquals(new ScanSummary(1, 0, 0, 0), summary);
+        assertTrue(fileRepository.findByPath("Docs/a.txt").isPresent());
+        assertTrue(fileRepository.findByPath("Desktop/b.txt").isPresent());
+    }
+
     @Test
     void testDeleteFile() throws IOException {
         // given
@@ -267,13 +354,87 @@ class FileServiceTest {
         assertEquals(expectedDateTime, log.getTimestamp());
     }
 
+    @Test
+    void testFindLargestDirectories_RollsUpSubtreesAndFollowsDeletes() throws IOException {
+        // given
+        Path root = fs.getPath("Root/");
+        setupDirectoryWithContents(
+                root,
+                List.of("Docs/a.txt", "Docs/Old/b.txt", "Docs/Old/c.txt", "Desktop/d.txt"),
+                List.of("a".repeat(100), "b".repeat(200), "c".repeat(200), "d".repeat(50))
+        );
+        fileService.loadFromPath(root, defaultPattern);
+
+        // when
+        List<DirectoryStats> before = fileService.findLargestDirectories(3);
+        fileService.deleteFile(root.resolve("Docs/Old/c.txt"));
+        List<DirectoryStats> after = fileService.findLargestDirectories(3);
+
+        // then
+        assertEquals(List.of("Root", "Root/Docs", "Root/Docs/Old"), before.stream().map(DirectoryStats::getPath).toList());
+        assertEquals(List.of(550L, 500L, 400L), before.stream().map(DirectoryStats::getSubtreeBytes).toList());
+        assertEquals(4, before.get(0).getSubtreeFileCount());
+        assertEquals(0, before.get(0).getFileCount());
+        assertEquals(400, before.get(0).getSubtreeDuplicateBytes());
+        assertEquals(400, before.get(2).getDuplicateBytes());
+
+        assertEquals(List.of(350L, 300L, 200L), after.stream().map(DirectoryStats::getSubtreeBytes).toList());
+        assertEquals(1, after.get(2).getFileCount());
+        assertEquals(0, after.get(0).getSubtreeDuplicateBytes());
+
+        // when
+        fileService.deleteFile(root.resolve("Desktop/d.txt"));
+        List<DirectoryStats> followed = fileService.findLargestDirectories(10);
+        fileService.loadFromPath(root, defaultPattern);
+        List<DirectoryStats> rebuilt = fileService.findLargestDirectories(10);
+
+        // then
+        assertEquals(List.of("Root", "Root/Docs", "Root/Docs/Old"), followed.stream().map(DirectoryStats::getPath).toList());
+        assertEquals(rebuilt.stream().map(DirectoryStats::getPath).toList(),
+                followed.stream().map(DirectoryStats::getPath).toList());
+        assertEquals(rollupTotals(rebuilt), rollupTotals(followed));
+    }
+
+    @Test
+    void testFindLargestDirectories_IncrementalScanUpdatesRollupLikeRebuild() throws IOException {
+        // given
+        Path root = fs.getPath("Root/");
+        setupDirectoryWithContents(
+                root,
+                List.of("Docs/a.txt", "Docs/Old/b.txt", "Desktop/d.txt"),
+                List.of("a".repeat(100), "b".repeat(200), "d".repeat(50))
+        );
+        fileService.loadFromPath(root, defaultPattern);
+        Files.writeString(root.resolve("Docs/Old/c.txt"), "c".repeat(200));
+        Files.writeString(root.resolve("Docs/a.txt"), "a".repeat(300));
+        Files.delete(root.resolve("Desktop/d.txt"));
+
+        // when
+        fileService.loadFromPath(root, defaultPattern, ScanMode.INCREMENTAL);
+        List<List<Long>> updated = rollupTotals(fileService.findLargestDirectories(10));
+        fileService.loadFromPath(root, defaultPattern);
+        List<List<Long>> rebuilt = rollupTotals(fileService.findLargestDirectories(10));
+
+        // then
+        assertEquals(rebuilt, updated);
+        assertEquals(List.of(700L, 700L, 400L), updated.stream().map(totals -> totals.get(0)).toList());
+        assertEquals(List.of(400L, 400L, 400L), updated.stream().map(totals -> totals.get(2)).toList());
+    }
+
+    private static List<List<Long>> rollupTotals(List<DirectoryStats> directories) {
+        return directories.stream()
+                .map(d -> List.of(d.getSubtreeBytes(), d.getSubtreeFileCount(), d.getSubtreeDuplicateBytes(),
+                        d.getTotalBytes(), d.getFileCount(), d.getDuplicateBytes()))
+                .toList();
+    }
+
     @Test
     void testGetDuplicates_IfFilesHaveTheSameHashSameSize_ReturnsThem() throws IOException {
         // given
         Path dir = fs.getPath("Docs/");
         setupDirectoryWithHashes(dir,
                 List.of("a.txt", "b.txt", "c.txt", "d.txt", "e.txt", "f.txt"),
-                List.of("1", "2", "1", "1", "2", "3")
+                List.of("01", "02", "01", "01", "02", "03")
         );
         fileService.loadFromPath(dir, defaultPattern);
 
@@ -290,6 +451,26 @@ class FileServiceTest {
         assertTrue(fileNames.contains(List.of("b.txt", "e.txt")));
     }
 
+    @Test
+    void testGetDuplicates_RehashesFilesHashedWithAnotherAlgorithm() throws IOException {
+        // given
+        Path dir = fs.getPath("Docs/");
+        List<Path> files = setupDirectoryWithHashes(dir, List.of("a.txt", "b.txt"), List.of("01", "02"));
+        when(fileHasher.algorithm()).thenReturn("XXH64");
+        fileService.loadFromPath(dir, defaultPattern);
+        when(fileHasher.algorithm()).thenReturn("SHA-256");
+        when(fileHasher.hash(files.get(1))).thenReturn("01");
+
+        // when
+        List<List<File>> duplicates = fileService.findDuplicatedGroups();
+
+        // then
+        verify(fileHasher, times(2)).hash(files.get(0));
+        verify(fileHasher, times(2)).hash(files.get(1));
+        assertEquals(1, duplicates.size());
+        assertTrue(duplicates.get(0).stream().allMatch(f -> f.getHashAlgorithm().equals("SHA-256")));
+    }
+
     @Test
     void testArchiveFiles() throws IOException {
         // given
@@ -373,6 +554,85 @@ class FileServiceTest {
     }
 
 
+    @Test
+    void testFindVersions_MergesGroupsBridgedByALaterPair() throws IOException {
+        // given: aaaa-aaab and aabc-abbc are at distance 1, the groups are only bridged at distance 2
+        var dir = fs.getPath("Docs/");
+        setupDirectory(dir, "aaaa.txt", "aaab.txt", "aabc.txt", "abbc.txt");
+        fileService.loadFromPath(dir, defaultPattern);
+
+        // when
+        List<List<File>> versions = fileService.findVersions(3);
+
+        // then
+        assertEquals(1, versions.size());
+        assertEquals(Set.of("aaaa.txt", "aaab.txt", "aabc.txt", "abbc.txt"),
+                versions.get(0).stream().map(File::getName).collect(Collectors.toSet()));
+    }
+
+    @Test
+    void testFindVersions_GroupsNamesWithTheSameVersionKeyOnlyWithinDistance() throws IOException {
+        // given: report_v2 and report (1) are at distance 4, the dated name is further from both
+        var dir = fs.getPath("Docs/");
+        setupDirectory(dir, "report_v2.docx", "report (1).docx", "report-2024-03-01.docx", "notes.txt");
+        fileService.loadFromPath(dir, defaultPattern);
+
+        // when
+        List<List<File>> versions = fileService.findVersions(5);
+
+        // then
+        assertEquals(1, versions.size());
+        assertEquals(Set.of("report_v2.docx", "report (1).docx"),
+                versions.get(0).stream().map(File::getName).collect(Collectors.toSet()));
+    }
+
+    @Test
+    void testFindVersions_DoesNotGroupNumberedFiles() throws IOException {
+        // given
+        var dir = fs.getPath("Docs/");
+        setupDirectory(dir, "IMG_0001.jpg", "IMG_0042.jpg", "IMG_0317.jpg", "invoice_1234.pdf", "invoice_9876.pdf",
+                "report_v2.docx", "report_v3.docx");
+        fileService.loadFromPath(dir, defaultPattern);
+
+        // when
+        List<List<File>> versions = fileService.findVersions(2);
+
+        // then
+        assertEquals(1, versions.size());
+        assertEquals(Set.of("report_v2.docx", "report_v3.docx"),
+                versions.get(0).stream().map(File::getName).collect(Collectors.toSet()));
+    }
+
+    @Test
+    void testFindVersions_WhenDistanceIsZero_ReturnsNoGroups() throws IOException {
+        // given
+        var dir = fs.getPath("Docs/");
+        setupDirectory(dir, "report_v2.docx", "report (1).docx", "report-2024-03-01.docx");
+        fileService.loadFromPath(dir, defaultPattern);
+
+        // when
+        List<List<File>> versions = fileService.findVersions(0);
+
+        // then
+        assertTrue(versions.isEmpty());
+    }
+
+    @Test
+    void testFindVersions_GroupsSimilarNamesWhoseVersionKeysAreFarApart() throws IOException {
+        // given: the keys a.txt and a_fin.txt are at distance 4, the names at distance 2
+        var dir = fs.getPath("Docs/");
+        setupDirectory(dir, "a_final.txt", "a_fin.txt", "notes.md");
+        fileService.loadFromPath(dir, defaultPattern);
+
+        // when
+        List<List<File>> versions = fileService.findVersions(3);
+
+        // then
+        assertEquals(1, versions.size());
+        assertEquals(Set.of("a_final.txt", "a_fin.txt"),
+                versions.get(0).stream().map(File::getName).collect(Collectors.toSet()));
+    }
+
     @Test
     void testGetFileSizeStats_WhenNoFiles_ReturnsEmpty() {
         // when
@@ -444,6 +704,22 @@ class FileServiceTest {
         assertEquals(4, histogram.buckets().get(2));
     }
 
+    @Test
+    void testGetFileSizeHistogram_AllFilesOfTheSameSize_PutsThemInTheFirstBucket() throws IOException {
+        // given
+        var dir = fs.getPath("Docs/");
+        setupDirectoryWithContents(dir, List.of("a.txt", "b.txt", "c.txt"), List.of("aa", "bb", "cc"));
+        fileService.loadFromPath(dir, defaultPattern);
+
+        // when
+        Histogram histogram = fileService.getFileSizeHistogram(4).orElseThrow();
+
+        // then
+        assertEquals(2, histogram.min());
+        assertEquals(2, histogram.max());
+        assertEquals(List.of(3L, 0L, 0L, 0L), histogram.buckets());
+    }
+
     @Test
     void testGetLastModifiedHistogram_NoFiles_ReturnsEmpty() {
         // when
@@ -495,4 +771,26 @@ class FileServiceTest {
         assertEquals(2, counts.get("doc"));
         assertEquals(1, counts.get("docx"));
     }
-}
\ No newline at end of file
+
+    @Test
+    void testGetExtensionStats_CountsFilesAndBytes() throws IOException {
+        // given
+        var dir = fs.getPath("Docs/");
+        setupDirectoryWithContents(
+                dir,
+                List.of("a.txt", "b.txt", "archive.tar.gz", "README"),
+                List.of("a".repeat(10), "b".repeat(20), "c".repeat(30), "d".repeat(40))
+        );
+        fileService.loadFromPath(dir, defaultPattern);
+
+        // when
+        Map<String, ExtensionStats> stats = fileService.getExtensionStats().stream()
+                .collect(Collectors.toMap(ExtensionStats::extension, s -> s));
+
+        // then
+        assertEquals(Set.of("txt", "gz", ""), stats.keySet());
+        assertEquals(new ExtensionStats("txt", 2, 30), stats.get("txt"));
+        assertEquals(new ExtensionStats("gz", 1, 30), stats.get("gz"));
+        assertEquals(new ExtensionStats("", 1, 40), stats.get(""));
+    }
+}
@@ -0,0 +1,57 @@
+package pl.edu.agh.to2.service;
+
+import com.google.common.jimfs.Configuration;
+import com.google.common.jimfs.Jimfs;
+import jakarta.transaction.Transactional;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.mockito.Mockito;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.test.context.ActiveProfiles;
+import pl.edu.agh.to2.repository.FileRepository;
+
+import java.io.IOException;
+import java.nio.file.FileSystem;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.util.regex.Pattern;
+
+import static org.mockito.Mockito.when;
+
+// Fixture shared by the FileService tests: an empty index, a mocked hasher and clock, and an in-memory
+// file system. Subclasses only add the properties they run with, e.g. @TestPropertySource.
+@SpringBootTest
+@ActiveProfiles("test")
+@Transactional
+abstract class FileServiceTestBase {
+    static final Pattern defaultPattern = Pattern.compile(".*");
+    FileSystem fs;
+
+    @Autowired
+    FileService fileService;
+    @Autowired
+    FileRepository fileRepository;
+    @MockBean
+    FileHasher fileHasher;
+    @MockBean
+    Clock clock;
+
+    @BeforeEach
+    void setupFixture() throws IOException {
+        fileRepository.deleteAll();
+
+        when(fileHasher.hash(Mockito.any())).thenReturn("ab");
+        when(fileHasher.algorithm()).thenReturn("SHA-256");
+        when(clock.instant()).thenReturn(Instant.now());
+        when(clock.getZone()).thenReturn(ZoneId.systemDefault());
+        fs = Jimfs.newFileSystem(Configuration.unix());
+    }
+
+    @AfterEach
+    void tearDownFixture() throws IOException {
+        fs.close();
+    }
+}
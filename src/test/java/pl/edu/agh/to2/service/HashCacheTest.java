@@ -0,0 +1,108 @@
+package pl.edu.agh.to2.service;
+
+import com.google.common.jimfs.Configuration;
+import com.google.common.jimfs.Jimfs;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.test.context.ActiveProfiles;
+import pl.edu.agh.to2.model.HashCacheEntry;
+import pl.edu.agh.to2.repository.HashCacheRepository;
+
+import java.io.IOException;
+import java.nio.file.FileSystem;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.when;
+
+@SpringBootTest(properties = {
+        "file-cleaner.hash.cache.min-size-kb=0",
+        "file-cleaner.hash.cache.max-entries=2"
+})
+@ActiveProfiles("test")
+class HashCacheTest {
+    private final AtomicInteger hashed = new AtomicInteger();
+    private final FileHasher countingHasher = path -> String.format("%02x", hashed.incrementAndGet());
+    private FileSystem fs;
+
+    @Autowired
+    private HashCache hashCache;
+    @Autowired
+    private HashCacheRepository hashCacheRepository;
+    @MockBean
+    private Clock clock;
+
+    @BeforeEach
+    void setup() {
+        hashCacheRepository.deleteAll();
+        when(clock.instant()).thenReturn(Instant.ofEpochMilli(1000));
+        fs = Jimfs.newFileSystem(Configuration.unix());
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        fs.close();
+    }
+
+    @Test
+    void testHash_ReusesHashOfMovedFile() throws IOException {
+        // given
+        Path file = Files.writeString(fs.getPath("a.txt"), "content");
+        String hash = hashCache.hash(countingHasher, file);
+        Path moved = Files.move(file, Files.createDirectory(fs.getPath("Docs")).resolve("b.txt"));
+        long hits = hashCache.getHits();
+
+        // when
+        String movedHash = hashCache.hash(countingHasher, moved);
+
+        // then
+        assertEquals(hash, movedHash);
+        assertEquals(1, hashed.get());
+        assertEquals(hits + 1, hashCache.getHits());
+    }
+
+    @Test
+    void testHash_HashesAgainWhenFileChanged() throws IOException {
+        // given
+        Path file = Files.writeString(fs.getPath("a.txt"), "content");
+        hashCache.hash(countingHasher, file);
+        Files.writeString(file, "other content");
+
+        // when
+        String hash = hashCache.hash(countingHasher, file);
+
+        // then
+        assertEquals("02", hash);
+        assertEquals(2, hashed.get());
+    }
+
+    @Test
+    void testFlush_EvictsLeastRecentlyUsedEntries() throws IOException {
+        // given
+        Path a = Files.writeString(fs.getPath("a.txt"), "a");
+        Path b = Files.writeString(fs.getPath("b.txt"), "bb");
+        Path c = Files.writeString(fs.getPath("c.txt"), "ccc");
+        hashCache.hash(countingHasher, a);
+        hashCache.hash(countingHasher, b);
+        when(clock.instant()).thenReturn(Instant.ofEpochMilli(2000));
+        hashCache.hash(countingHasher, a);
+        hashCache.hash(countingHasher, c);
+
+        // when
+        hashCache.flush();
+
+        // then
+        assertEquals(2, hashCacheRepository.count());
+        List<Long> sizes = hashCacheRepository.findAll().stream().map(HashCacheEntry::getSize).sorted().toList();
+        assertEquals(List.of(1L, 3L), sizes);
+    }
+}
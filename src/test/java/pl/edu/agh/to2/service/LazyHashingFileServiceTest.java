@@ -0,0 +1,74 @@
+package pl.edu.agh.to2.service;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.test.context.TestPropertySource;
+import pl.edu.agh.to2.model.File;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@TestPropertySource(properties = "file-cleaner.hash.mode=LAZY")
+class LazyHashingFileServiceTest extends FileServiceTestBase {
+    @Test
+    void testLoadFromPath_DoesNotHashFiles() throws IOException {
+        // given
+        Path dir = Files.createDirectory(fs.getPath("Docs/"));
+        Files.writeString(dir.resolve("a.txt"), "a");
+
+        // when
+        fileService.loadFromPath(dir, defaultPattern);
+
+        // then
+        verify(fileHasher, never()).hash(any());
+        assertNull(fileRepository.findByPath("Docs/a.txt").orElseThrow().getHash());
+    }
+
+    @Test
+    void testFindDuplicatedGroups_HashesOnlyFilesWithCollidingSize() throws IOException {
+        // given
+        Path dir = Files.createDirectory(fs.getPath("Docs/"));
+        Path a = Files.writeString(dir.resolve("a.txt"), "a");
+        Path b = Files.writeString(dir.resolve("b.txt"), "b");
+        Path c = Files.writeString(dir.resolve("c.txt"), "cc");
+        fileService.loadFromPath(dir, defaultPattern);
+
+        // when
+        List<List<File>> duplicates = fileService.findDuplicatedGroups();
+
+        // then
+        verify(fileHasher).hash(a);
+        verify(fileHasher).hash(b);
+        verify(fileHasher, never()).hash(c);
+        assertEquals(1, duplicates.size());
+        assertEquals(List.of("a.txt", "b.txt"), duplicates.get(0).stream().map(File::getName).sorted().toList());
+        assertNull(fileRepository.findByPath("Docs/c.txt").orElseThrow().getHash());
+    }
+
+    @Test
+    void testFindDuplicatedGroups_SkipsFullHashWhenHeadsDiffer() throws IOException {
+        // given
+        Path dir = Files.createDirectory(fs.getPath("Docs/"));
+        byte[] bytes = new byte[500_000];
+        Path a = Files.write(dir.resolve("a.bin"), bytes);
+        Path b = Files.write(dir.resolve("b.bin"), bytes);
+        bytes[0] = 1;
+        Path c = Files.write(dir.resolve("c.bin"), bytes);
+        fileService.loadFromPath(dir, defaultPattern);
+
+        // when
+        List<List<File>> duplicates = fileService.findDuplicatedGroups();
+
+        // then
+        verify(fileHasher).hash(a);
+        verify(fileHasher).hash(b);
+        verify(fileHasher, never()).hash(c);
+        assertEquals(1, duplicates.size());
+        assertNotNull(fileRepository.findByPath("Docs/c.bin").orElseThrow().getPartialHash());
+        assertNull(fileRepository.findByPath("Docs/c.bin").orElseThrow().getHash());
+    }
+}
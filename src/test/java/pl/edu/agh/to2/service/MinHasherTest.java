@@ -0,0 +1,94 @@
+package pl.edu.agh.to2.service;
+
+import com.google.common.jimfs.Configuration;
+import com.google.common.jimfs.Jimfs;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.FileSystem;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MinHasherTest {
+    private FileSystem fs;
+    private Path tempDir;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        fs = Jimfs.newFileSystem(Configuration.unix());
+        tempDir = Files.createDirectory(fs.getPath("testDir"));
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        fs.close();
+    }
+
+    @Test
+    void testSignature_OfEqualContents_AreEqual() throws IOException {
+        // given
+        Path file1 = Files.writeString(tempDir.resolve("file1"), log(0, 100));
+        Path file2 = Files.writeString(tempDir.resolve("file2"), log(0, 100));
+
+        // when
+        byte[] signature1 = MinHasher.signature(file1);
+        byte[] signature2 = MinHasher.signature(file2);
+
+        // then
+        assertEquals(MinHasher.SIGNATURE_BYTES, signature1.length);
+        assertArrayEquals(signature1, signature2);
+        assertEquals(1.0, MinHasher.similarity(signature1, signature2));
+    }
+
+    @Test
+    void testSimilarity_OfSlightlyEditedFile_IsHigh() throws IOException {
+        // given
+        Path original = Files.writeString(tempDir.resolve("original"), log(0, 1000));
+        Path edited = Files.writeString(tempDir.resolve("edited"), log(0, 500) + "edited line\n" + log(501, 1000));
+
+        // when
+        double similarity = MinHasher.similarity(MinHasher.signature(original), MinHasher.signature(edited));
+
+        // then
+        assertTrue(similarity > 0.9, "similarity: " + similarity);
+    }
+
+    @Test
+    void testSimilarity_OfUnrelatedFiles_IsLow() throws IOException {
+        // given
+        Path file1 = Files.writeString(tempDir.resolve("file1"), log(0, 1000));
+        Path file2 = Files.writeString(tempDir.resolve("file2"), IntStream.range(0, 1000)
+                .mapToObj(i -> "id;name;" + (i * 7919) % 1000 + "\n")
+                .collect(Collectors.joining()));
+
+        // when
+        double similarity = MinHasher.similarity(MinHasher.signature(file1), MinHasher.signature(file2));
+
+        // then
+        assertTrue(similarity < 0.2, "similarity: " + similarity);
+    }
+
+    @Test
+    void testSignature_OfFileShorterThanAShingle_IsNull() throws IOException {
+        // given
+        Path file = Files.writeString(tempDir.resolve("file"), "short");
+
+        // when
+        byte[] signature = MinHasher.signature(file);
+
+        // then
+        assertNull(signature);
+    }
+
+    private static String log(int from, int to) {
+        return IntStream.range(from, to)
+                .mapToObj(i -> "2024-03-01 12:00:" + i + " INFO request " + i + " handled\n")
+                .collect(Collectors.joining());
+    }
+}
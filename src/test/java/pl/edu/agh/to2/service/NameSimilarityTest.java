@@ -0,0 +1,73 @@
+package pl.edu.agh.to2.service;
+
+import jakarta.transaction.Transactional;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.test.context.ActiveProfiles;
+import pl.edu.agh.to2.model.File;
+import pl.edu.agh.to2.repository.EditDistanceResult;
+import pl.edu.agh.to2.repository.FileRepository;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+@ActiveProfiles("test")
+@Transactional
+class NameSimilarityTest {
+    @Autowired
+    private NameSimilarity nameSimilarity;
+    @Autowired
+    private FileRepository fileRepository;
+    @MockBean
+    private FileHasher fileHasher;
+
+    @BeforeEach
+    void setup() {
+        fileRepository.deleteAll();
+        List<String> names = new ArrayList<>(List.of(
+                "report.docx", "report_v2.docx", "report (1).docx", "report.docx", "notes.txt", "notes.md",
+                "caf\u00e9.txt", "cafe.txt", "\uD83D\uDE00.png", "a.png", "", "x"
+        ));
+        Random random = new Random(7);
+        String alphabet = "ab.\u00e9";
+        for (int i = 0; i < 150; i++) {
+            StringBuilder name = new StringBuilder();
+            int length = 1 + random.nextInt(6);
+            for (int j = 0; j < length; j++) {
+                name.append(alphabet.charAt(random.nextInt(alphabet.length())));
+            }
+            names.add(name.toString());
+        }
+
+        List<File> files = new ArrayList<>();
+        for (int i = 0; i < names.size(); i++) {
+            files.add(new File(names.get(i), "Docs/" + i + "/" + names.get(i), i, i, null));
+        }
+        fileRepository.saveAll(files);
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {0, 1, 2, 3, 4})
+    void testFindSimilarFileNames_SameResultAsTheDatabase(int maxDistance) {
+        // when
+        List<EditDistanceResult> expected = fileRepository.findSimilarFileNames(maxDistance);
+        List<EditDistanceResult> actual = nameSimilarity.findSimilarFileNames(maxDistance);
+
+        // then
+        assertEquals(describe(expected), describe(actual));
+    }
+
+    private static List<String> describe(List<EditDistanceResult> results) {
+        return results.stream()
+                .map(r -> r.first().getId() + "-" + r.second().getId() + ":" + r.distance())
+                .toList();
+    }
+}
@@ -0,0 +1,81 @@
+package pl.edu.agh.to2.service;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.test.context.TestPropertySource;
+import pl.edu.agh.to2.model.File;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@TestPropertySource(properties = "file-cleaner.similarity.enabled=true")
+class NearDuplicatesFileServiceTest extends FileServiceTestBase {
+    @Test
+    void testLoadFromPath_StoresContentSignatures() throws IOException {
+        // given
+        Path dir = Files.createDirectory(fs.getPath("Docs/"));
+        Files.writeString(dir.resolve("a.log"), log(0, 100));
+        Files.writeString(dir.resolve("b.txt"), "b");
+
+        // when
+        fileService.loadFromPath(dir, defaultPattern);
+
+        // then
+        assertEquals(MinHasher.SIGNATURE_BYTES, fileRepository.findByPath("Docs/a.log").orElseThrow().getMinHash().length);
+        assertNull(fileRepository.findByPath("Docs/b.txt").orElseThrow().getMinHash());
+    }
+
+    @Test
+    void testLoadFromPath_CopiesSignaturesOfUnchangedFilesInsteadOfReadingThem() throws IOException {
+        // given
+        Path dir = Files.createDirectory(fs.getPath("Docs/"));
+        Path file = Files.writeString(dir.resolve("a.log"), log(0, 100));
+        FileTime lastModified = Files.getLastModifiedTime(file);
+        fileService.loadFromPath(dir, defaultPattern);
+        byte[] signature = fileRepository.findByPath("Docs/a.log").orElseThrow().getMinHash();
+
+        // content of the same size under the same modification time, only a new read would notice it
+        Files.writeString(file, "x".repeat((int) Files.size(file)));
+        Files.setLastModifiedTime(file, lastModified);
+
+        // when
+        fileService.loadFromPath(dir, defaultPattern);
+
+        // then
+        assertArrayEquals(signature, fileRepository.findByPath("Docs/a.log").orElseThrow().getMinHash());
+    }
+
+    @Test
+    void testFindNearDuplicates_GroupsEditedCopies() throws IOException {
+        // given
+        Path dir = Files.createDirectory(fs.getPath("Docs/"));
+        Files.writeString(dir.resolve("app.log"), log(0, 1000));
+        Files.writeString(dir.resolve("app.log.1"), log(0, 1000) + log(1000, 1010));
+        Files.writeString(dir.resolve("app-edited.log"), log(0, 300) + "edited line\n" + log(301, 1000));
+        Files.writeString(dir.resolve("other.csv"), IntStream.range(0, 1000)
+                .mapToObj(i -> "id;name;" + (i * 7919) % 1000 + "\n")
+                .collect(Collectors.joining()));
+        fileService.loadFromPath(dir, defaultPattern);
+
+        // when
+        List<List<File>> groups = fileService.findNearDuplicates();
+
+        // then
+        assertEquals(1, groups.size());
+        assertEquals(Set.of("app.log", "app.log.1", "app-edited.log"),
+                groups.get(0).stream().map(File::getName).collect(Collectors.toSet()));
+    }
+
+    private static String log(int from, int to) {
+        return IntStream.range(from, to)
+                .mapToObj(i -> "2024-03-01 12:00:" + i + " INFO request " + i + " handled\n")
+                .collect(Collectors.joining());
+    }
+}
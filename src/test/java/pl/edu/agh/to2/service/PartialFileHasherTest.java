@@ -0,0 +1,83 @@
+package pl.edu.agh.to2.service;
+
+import com.google.common.jimfs.Configuration;
+import com.google.common.jimfs.Jimfs;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.FileSystem;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+
+class PartialFileHasherTest {
+    private final PartialFileHasher fileHasher = new PartialFileHasher(1024);
+    private FileSystem fs;
+    private Path tempDir;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        fs = Jimfs.newFileSystem(Configuration.unix());
+        tempDir = Files.createDirectory(fs.getPath("testDir"));
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        fs.close();
+    }
+
+    @Test
+    void testHash_IgnoresTheMiddleOfTheFile() throws IOException {
+        // given
+        byte[] bytes = new byte[10_000];
+        Path file1 = Files.write(tempDir.resolve("file1"), bytes);
+        bytes[5_000] = 1;
+        Path file2 = Files.write(tempDir.resolve("file2"), bytes);
+
+        // when
+        String hash1 = fileHasher.hash(file1);
+        String hash2 = fileHasher.hash(file2);
+
+        // then
+        assertEquals(hash1, hash2);
+        assertEquals(4 * 1024, fileHasher.getBytesRead());
+    }
+
+    @Test
+    void testHash_DetectsDifferencesInTheHeadAndTheTail() throws IOException {
+        // given
+        byte[] bytes = new byte[10_000];
+        Path original = Files.write(tempDir.resolve("original"), bytes);
+        bytes[0] = 1;
+        Path head = Files.write(tempDir.resolve("head"), bytes);
+        bytes[0] = 0;
+        bytes[bytes.length - 1] = 1;
+        Path tail = Files.write(tempDir.resolve("tail"), bytes);
+
+        // when
+        String originalHash = fileHasher.hash(original);
+
+        // then
+        assertNotEquals(originalHash, fileHasher.hash(head));
+        assertNotEquals(originalHash, fileHasher.hash(tail));
+    }
+
+    @Test
+    void testHash_ReadsSmallFilesOnce() throws IOException {
+        // given
+        Path file1 = Files.writeString(tempDir.resolve("file1"), "content");
+        Path file2 = Files.writeString(tempDir.resolve("file2"), "content\0");
+
+        // when
+        String hash1 = fileHasher.hash(file1);
+        String hash2 = fileHasher.hash(file2);
+
+        // then
+        assertNotEquals(hash1, hash2);
+        assertEquals(15, fileHasher.getBytesRead());
+    }
+}
@@ -0,0 +1,33 @@
+package pl.edu.agh.to2.service;
+
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class VersionKeysTest {
+
+    @ParameterizedTest
+    @CsvSource({
+            "report.docx, report.docx",
+            "report_v2.docx, report.docx",
+            "report v1.2.docx, report.docx",
+            "report (1).docx, report.docx",
+            "report - Copy (2).docx, report.docx",
+            "report copy 2.docx, report.docx",
+            "Report-2024-03-01.docx, report.docx",
+            "report_final_v3.docx, report.docx",
+            "raport - kopia.odt, raport.odt",
+            "ver10.txt, ver10.txt",
+            "IMG_0001.jpg, img_0001.jpg",
+            "invoice_1234.pdf, invoice_1234.pdf",
+            "photocopy.txt, photocopy.txt",
+            "2024-03-01.txt, 2024-03-01.txt",
+            "archive.tar.gz, archive.tar.gz",
+            "notes, notes",
+            ".bashrc, .bashrc"
+    })
+    void testKeyOf(String name, String key) {
+        assertEquals(key, VersionKeys.keyOf(name));
+    }
+}
@@ -0,0 +1,64 @@
+package pl.edu.agh.to2.service;
+
+import com.google.common.jimfs.Configuration;
+import com.google.common.jimfs.Jimfs;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.FileSystem;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class XxHash64FileHasherTest {
+    private final XxHash64FileHasher fileHasher = new XxHash64FileHasher();
+    private FileSystem fs;
+
+    @BeforeEach
+    void setUp() {
+        fs = Jimfs.newFileSystem(Configuration.unix());
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        fs.close();
+    }
+
+    @Test
+    void testHash_MatchesReferenceValues() throws IOException {
+        assertEquals("ef46db3751d8e999", hashOf(""));
+        assertEquals("d24ec4f1a98c6e5b", hashOf("a"));
+        assertEquals("44bc2cf5ad770999", hashOf("abc"));
+        assertEquals("fbcea83c8a378bf1", hashOf("Nobody inspects the spammish repetition"));
+    }
+
+    @Test
+    void testHash_DoesNotDependOnHowTheInputIsSplit() {
+        // given
+        byte[] bytes = new byte[10_000];
+        new Random(42).nextBytes(bytes);
+        XxHash64FileHasher.XxHash64 whole = new XxHash64FileHasher.XxHash64();
+        whole.update(bytes, 0, bytes.length);
+
+        // when
+        XxHash64FileHasher.XxHash64 split = new XxHash64FileHasher.XxHash64();
+        Random random = new Random(7);
+        for (int offset = 0; offset < bytes.length; ) {
+            int count = Math.min(bytes.length - offset, random.nextInt(100));
+            split.update(bytes, offset, count);
+            offset += count;
+        }
+
+        // then
+        assertEquals(whole.digest(), split.digest());
+    }
+
+    private String hashOf(String content) throws IOException {
+        Path file = Files.writeString(fs.getPath("file"), content);
+        return fileHasher.hash(file);
+    }
+}
@@ -0,0 +1,87 @@
+package pl.edu.agh.to2.service.scan;
+
+import com.google.common.jimfs.Configuration;
+import com.google.common.jimfs.Jimfs;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.FileStore;
+import java.nio.file.FileSystem;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FileStoreConcurrencyTest {
+    private FileSystem fs;
+    private Path sysClassBlock;
+    private FileStoreConcurrency concurrency;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        fs = Jimfs.newFileSystem(Configuration.unix());
+        sysClassBlock = Files.createDirectories(fs.getPath("/sys/class/block"));
+        concurrency = new FileStoreConcurrency(sysClassBlock, 2, 8, 1, "");
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        fs.close();
+    }
+
+    @Test
+    void testIsRotational_ReadsTheDeviceQueue() throws IOException {
+        // given
+        createDevice("sda", "1");
+        createDevice("nvme0n1", "0");
+
+        // when, then
+        assertTrue(concurrency.isRotational("/dev/sda"));
+        assertFalse(concurrency.isRotational("/dev/nvme0n1"));
+    }
+
+    @Test
+    void testIsRotational_TakesPartitionTypeFromItsDisk() throws IOException {
+        // given
+        Path disk = createDevice("sdb", "1");
+        Path partition = Files.createDirectory(disk.resolve("sdb1"));
+        Files.createSymbolicLink(sysClassBlock.resolve("sdb1"), partition);
+
+        // when, then
+        assertTrue(concurrency.isRotational("/dev/sdb1"));
+    }
+
+    @Test
+    void testIsRotational_UnknownDevice() {
+        assertNull(concurrency.isRotational("/dev/mapper/unknown"));
+        assertNull(concurrency.isRotational("overlay"));
+    }
+
+    @Test
+    void testThreadsFor_UsesDefaultForUnknownStores() throws IOException {
+        // given
+        FileStore store = Files.getFileStore(sysClassBlock);
+
+        // when, then
+        assertEquals(2, concurrency.threadsFor(store));
+        assertEquals(2, concurrency.threadsFor(null));
+    }
+
+    @Test
+    void testThreadsFor_ConfiguredThreadsWin() throws IOException {
+        // given
+        FileStore store = Files.getFileStore(sysClassBlock);
+        FileStoreConcurrency configured = new FileStoreConcurrency(sysClassBlock, 2, 8, 1, store.name() + "=3");
+
+        // when, then
+        assertEquals(3, configured.threadsFor(store));
+    }
+
+    private Path createDevice(String name, String rotational) throws IOException {
+        Path device = Files.createDirectories(sysClassBlock.resolve(name).resolve("queue"));
+        Files.writeString(device.resolve("rotational"), rotational + "\n");
+        return device.getParent();
+    }
+}
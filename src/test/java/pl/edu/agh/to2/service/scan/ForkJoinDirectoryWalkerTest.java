@@ -0,0 +1,126 @@
+package pl.edu.agh.to2.service.scan;
+
+import com.google.common.jimfs.Configuration;
+import com.google.common.jimfs.Jimfs;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.FileSystem;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ForkJoinDirectoryWalkerTest {
+    private static final Pattern defaultPattern = Pattern.compile(".*");
+    private final ForkJoinDirectoryWalker walker = new ForkJoinDirectoryWalker(4);
+    private FileSystem fs;
+
+    @BeforeEach
+    void setUp() {
+        fs = Jimfs.newFileSystem(Configuration.unix());
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        walker.shutdown();
+        fs.close();
+    }
+
+    private void createTree(Path dir, int depth, int filesPerDir, int dirsPerDir) throws IOException {
+        Files.createDirectories(dir);
+        for (int i = 0; i < filesPerDir; i++) {
+            Files.createFile(dir.resolve("file" + i + (i % 2 == 0 ? ".txt" : ".doc")));
+        }
+        if (depth > 0) {
+            for (int i = 0; i < dirsPerDir; i++) {
+                createTree(dir.resolve("dir" + i), depth - 1, filesPerDir, dirsPerDir);
+            }
+        }
+    }
+
+    @Test
+    void testWalk_ReturnsTheSameFilesAsRecursiveWalk() throws IOException {
+        // given
+        Path root = fs.getPath("Root");
+        createTree(root, 3, 5, 3);
+
+        // when
+        List<ScannedFile> parallel = walker.walk(root, defaultPattern);
+        List<ScannedFile> sequential = new RecursiveDirectoryWalker().walk(root, defaultPattern);
+
+        // then
+        assertEquals(sequential.size(), parallel.size());
+        assertEquals(new HashSet<>(sequential), new HashSet<>(parallel));
+    }
+
+    @Test
+    void testWalk_RespectsPassedPattern() throws IOException {
+        // given
+        Path root = fs.getPath("Root");
+        createTree(root, 2, 4, 2);
+
+        // when
+        List<ScannedFile> files = walker.walk(root, Pattern.compile(".*\\.txt$"));
+
+        // then
+        assertEquals(14, files.size());
+        assertTrue(files.stream().allMatch(f -> f.path().getFileName().toString().endsWith(".txt")));
+    }
+
+    @Test
+    void testWalk_ReadsAttributesOncePerEntry() throws IOException {
+        // given
+        Path root = fs.getPath("Root");
+        createTree(root, 2, 4, 2);
+        Files.write(root.resolve("sized.bin"), new byte[123]);
+        ScanMetrics metrics = new ScanMetrics();
+
+        // when
+        List<ScannedFile> files = walker.walk(root, defaultPattern, metrics);
+
+        // then
+        assertEquals(29, metrics.getFiles());
+        assertEquals(7, metrics.getDirectories());
+        // every entry except the root is stat-ed exactly once
+        assertEquals(29 + 6, metrics.getStatCalls());
+        ScannedFile sized = files.stream()
+                .filter(f -> f.path().getFileName().toString().equals("sized.bin"))
+                .findFirst()
+                .orElseThrow();
+        assertEquals(123, sized.size());
+    }
+
+    @Test
+    void testWalk_WhenLinkPointsToAncestor_SkipsTheCycleLikeRecursiveWalk() throws IOException {
+        // given
+        Path root = fs.getPath("Root");
+        createTree(root, 2, 2, 2);
+        Files.createSymbolicLink(root.resolve("dir0").resolve("dir1").resolve("loop"), root.toAbsolutePath());
+        Files.createSymbolicLink(root.resolve("dir1").resolve("up"), root.resolve("dir1").toAbsolutePath());
+
+        // when
+        List<ScannedFile> parallel = walker.walk(root, defaultPattern);
+        List<ScannedFile> sequential = new RecursiveDirectoryWalker().walk(root, defaultPattern);
+
+        // then
+        assertEquals(14, parallel.size());
+        assertEquals(new HashSet<>(sequential), new HashSet<>(parallel));
+    }
+
+    @Test
+    void testWalk_WhenRootDoesNotExist_ReturnsEmpty() {
+        // when
+        List<ScannedFile> files = walker.walk(fs.getPath("Missing"), defaultPattern);
+
+        // then
+        assertEquals(Set.of(), new HashSet<>(files));
+    }
+}
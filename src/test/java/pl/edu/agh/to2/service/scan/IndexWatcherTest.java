@@ -0,0 +1,155 @@
+package pl.edu.agh.to2.service.scan;
+
+import com.google.common.jimfs.Configuration;
+import com.google.common.jimfs.Jimfs;
+import com.google.common.jimfs.WatchServiceConfiguration;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.FileSystem;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+class IndexWatcherTest {
+    private static final Pattern defaultPattern = Pattern.compile(".*");
+    private FileSystem fs;
+    private FileScanner fileScanner;
+    private IndexWatcher indexWatcher;
+    private Path root;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        fs = Jimfs.newFileSystem(Configuration.unix().toBuilder()
+                .setWatchServiceConfiguration(WatchServiceConfiguration.polling(10, TimeUnit.MILLISECONDS))
+                .build());
+        root = Files.createDirectory(fs.getPath("Root"));
+        fileScanner = mock(FileScanner.class);
+        indexWatcher = new IndexWatcher(fileScanner, true, 100);
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        indexWatcher.stop();
+        fs.close();
+    }
+
+    @Test
+    void testWatch_CoalescesEventsOfTheSameFile() throws IOException {
+        // given
+        indexWatcher.watch(root, defaultPattern);
+        Path file = root.resolve("a.txt");
+
+        // when
+        Files.writeString(file, "a");
+        Files.writeString(file, "ab");
+        Files.writeString(file, "abc");
+
+        // then
+        verify(fileScanner, timeout(2000).times(1))
+                .applyChanges(argThat(paths -> paths.size() == 1 && paths.contains(file)), eq(defaultPattern));
+    }
+
+    @Test
+    void testWatch_DeletedFileIsPassedToScanner() throws IOException {
+        // given
+        Path file = Files.createFile(root.resolve("a.txt"));
+        indexWatcher.watch(root, defaultPattern);
+
+        // when
+        Files.delete(file);
+
+        // then
+        verify(fileScanner, timeout(2000)).applyChanges(argThat(paths -> paths.contains(file)), any());
+    }
+
+    @Test
+    void testWatch_NewDirectoryIsRescannedAndWatched() throws IOException {
+        // given
+        indexWatcher.watch(root, defaultPattern);
+
+        // when
+        Path dir = Files.createDirectory(root.resolve("nested"));
+
+        // then
+        verify(fileScanner, timeout(2000)).rescanSubtree(dir, defaultPattern);
+
+        // when
+        Path file = Files.createFile(dir.resolve("b.txt"));
+
+        // then
+        verify(fileScanner, timeout(2000)).applyChanges(argThat(paths -> paths.contains(file)), any());
+    }
+
+    @Test
+    void testWatch_WatchesDirectoriesReachedThroughLinks() throws IOException {
+        // given
+        Path target = Files.createDirectory(fs.getPath("Target"));
+        Path link = Files.createSymbolicLink(root.resolve("link"), target.toAbsolutePath());
+        Files.createSymbolicLink(target.resolve("loop"), root.toAbsolutePath());
+        indexWatcher.watch(root, defaultPattern);
+
+        // when
+        Files.createFile(target.resolve("b.txt"));
+
+        // then
+        Path file = link.resolve("b.txt");
+        verify(fileScanner, timeout(2000)).applyChanges(argThat(paths -> paths.contains(file)), any());
+    }
+
+    @Test
+    void testWatch_WhenBatchFails_ItsPathsAreAppliedAgain() throws IOException {
+        // given
+        indexWatcher.watch(root, defaultPattern);
+        Path file = root.resolve("a.txt");
+        when(fileScanner.applyChanges(any(), any()))
+                .thenThrow(new IllegalStateException("database unavailable"))
+                .thenReturn(new ScanSummary(1, 0, 0, 0));
+
+        // when
+        Files.writeString(file, "a");
+
+        // then
+        verify(fileScanner, timeout(2000).times(2)).applyChanges(argThat(paths -> paths.contains(file)), any());
+    }
+
+    @Test
+    void testPause_ChangesAreAppliedAfterResume() throws IOException {
+        // given
+        indexWatcher.watch(root, defaultPattern);
+        indexWatcher.pause();
+
+        // when
+        Path file = Files.createFile(root.resolve("a.txt"));
+
+        // then
+        verify(fileScanner, after(500).never()).applyChanges(any(), any());
+
+        // when
+        indexWatcher.watch(root, defaultPattern);
+
+        // then
+        verify(fileScanner, timeout(2000)).applyChanges(argThat(paths -> paths.contains(file)), any());
+    }
+
+    @Test
+    void testWatch_WhenDisabled_DoesNothing() throws IOException {
+        // given
+        IndexWatcher disabled = new IndexWatcher(fileScanner, false, 100);
+        disabled.watch(root, defaultPattern);
+
+        // when
+        Files.createFile(root.resolve("a.txt"));
+
+        // then
+        verify(fileScanner, after(500).never()).applyChanges(any(), any());
+    }
+}